@@ -0,0 +1,295 @@
+package expensetracker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+public class AdvancedExpenseTracker extends JFrame {
+    private ExpenseTableModel tableModel;
+    private JTable table;
+
+    private JTextField dateField, categoryField, amountField, descriptionField, searchField;
+    private JLabel totalLabel, categoryLabel;
+    private JButton addButton, exportButton, importButton;
+
+    private JPanel bottomPanel, loadPanel;
+    private JProgressBar loadProgress;
+    private ExpenseLoadWorker loadWorker;
+    // Shown once, not again while the query is refined
+    private IOException shownArchiveFailure;
+
+    private final String FILE_NAME = "advanced_expenses.csv";
+    private final String LEDGER_NAME = "advanced_expenses" + BinaryLedger.EXTENSION;
+
+    // The binary ledger replaces the CSV once it has been imported with BinaryLedger
+    private final File snapshotFile = new File(LEDGER_NAME).exists() ? new File(LEDGER_NAME) : new File(FILE_NAME);
+    private final ExpenseEngine expenses = new ExpenseEngine(snapshotFile);
+
+    public AdvancedExpenseTracker() {
+        ExpenseMetrics.start(expenses, snapshotFile.getName());
+        setTitle("Advanced Personal Expense Tracker");
+        setSize(800, 500);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        // Inputs
+        JPanel inputPanel = new JPanel(new GridLayout(6, 2, 5, 5));
+        inputPanel.setBorder(BorderFactory.createTitledBorder("Add Expense"));
+
+        dateField = new JTextField();
+        categoryField = new JTextField();
+        amountField = new JTextField();
+        descriptionField = new JTextField();
+
+        inputPanel.add(new JLabel("Date (yyyy-MM-dd):"));
+        inputPanel.add(dateField);
+
+        inputPanel.add(new JLabel("Category:"));
+        inputPanel.add(categoryField);
+
+        inputPanel.add(new JLabel("Amount:"));
+        inputPanel.add(amountField);
+
+        inputPanel.add(new JLabel("Description:"));
+        inputPanel.add(descriptionField);
+
+        addButton = new JButton("Add Expense");
+        exportButton = new JButton("Save");
+
+        inputPanel.add(addButton);
+        inputPanel.add(exportButton);
+
+        importButton = new JButton("Import Statements Folder...");
+        inputPanel.add(importButton);
+
+        add(inputPanel, BorderLayout.NORTH);
+
+        // Table
+        tableModel = new ExpenseTableModel(expenses, ExpenseTableModel.Column.DATE, ExpenseTableModel.Column.CATEGORY,
+                ExpenseTableModel.Column.AMOUNT, ExpenseTableModel.Column.DESCRIPTION);
+        tableModel.addTableModelListener(e -> updateTotals());
+        table = new JTable(tableModel);
+        tableModel.sortOnHeaderClick(table);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        // Footer Panel: Search, Totals
+        bottomPanel = new JPanel(new GridLayout(0, 1));
+
+        JPanel searchPanel = new JPanel();
+        searchField = new JTextField(15);
+        JButton searchButton = new JButton("Search by Category");
+        JButton showAllButton = new JButton("Show All");
+        JButton reportButton = new JButton("Report");
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchButton);
+        searchPanel.add(showAllButton);
+        searchPanel.add(reportButton);
+
+        JPanel editPanel = new JPanel();
+
+        JPanel totalsPanel = new JPanel();
+        totalLabel = new JLabel("Total: ₹0.00");
+        categoryLabel = new JLabel("Category Total: ₹0.00");
+        totalsPanel.add(totalLabel);
+        totalsPanel.add(categoryLabel);
+
+        bottomPanel.add(searchPanel);
+        bottomPanel.add(editPanel);
+        bottomPanel.add(totalsPanel);
+
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        // Add Expense Action
+        addButton.addActionListener(e -> {
+            try {
+                int date = Dates.requireIso(dateField.getText());
+                String category = categoryField.getText();
+                long amount = Money.parse(amountField.getText());
+                String description = descriptionField.getText();
+
+                expenses.add(date, category, amount, description);
+                clearInputs();
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to save data.");
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Invalid input.");
+            }
+        });
+
+        // Export/save: every expense is already journaled, this folds the journal into the CSV
+        exportButton.addActionListener(e -> {
+            expenses.save();
+            JOptionPane.showMessageDialog(this, "💾 Expenses saved to file!");
+        });
+
+        importButton.addActionListener(e -> importStatements());
+
+        // Search by category as you type; the button only skips the typing pause
+        SearchAsYouType search = new SearchAsYouType(expenses, searchField, SearchAsYouType.Mode.CATEGORY,
+                this::showFilteredExpenses);
+        searchButton.addActionListener(e -> search.searchNow());
+
+        // Show all
+        showAllButton.addActionListener(e -> {
+            searchField.setText("");
+            search.searchNow();
+        });
+
+        reportButton.addActionListener(e -> showReport());
+
+        // Edit, delete, undo and redo; the search runs again for its category total
+        new ExpenseEditActions(expenses, table, tableModel, false, search::searchNow).addButtonsTo(editPanel);
+
+        setVisible(true);
+
+        // Load from file in the background, the table fills in as batches arrive
+        loadExpensesFromFile();
+    }
+
+    // Every statement CSV in a folder, read on virtual threads; rows already in the
+    // ledger are skipped
+    private void importStatements() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        File dir = chooser.getSelectedFile();
+        importButton.setEnabled(false);
+        new SwingWorker<StatementImporter.Summary, Void>() {
+            @Override
+            protected StatementImporter.Summary doInBackground() throws IOException {
+                return StatementImporter.importDirectory(expenses, dir);
+            }
+
+            @Override
+            protected void done() {
+                importButton.setEnabled(true);
+                try {
+                    JOptionPane.showMessageDialog(AdvancedExpenseTracker.this, "📥 " + get().describe());
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(AdvancedExpenseTracker.this, "❌ Failed to import statements.");
+                }
+            }
+        }.execute();
+    }
+
+    // Month, year or day report straight from the running totals; no rows are read
+    private void showReport() {
+        String input = JOptionPane.showInputDialog(this, "Report for (yyyy, yyyy-MM or yyyy-MM-dd):",
+                Period.MONTH.format(Dates.monthKey((int) LocalDate.now().toEpochDay())));
+        if (input == null) return;
+        try {
+            Period period = Period.of(input.trim());
+            JOptionPane.showMessageDialog(this, "📊 " + expenses.report(period, period.parse(input.trim()), 5).describe());
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "❌ Invalid period.");
+        }
+    }
+
+    private void clearInputs() {
+        dateField.setText("");
+        categoryField.setText("");
+        amountField.setText("");
+        descriptionField.setText("");
+    }
+
+    // An empty search shows every expense
+    private void showFilteredExpenses(SearchAsYouType.Result result) {
+        if (result.rows == null) {
+            tableModel.showAll();
+        } else {
+            tableModel.showOnly(result.rows, result.archived, result::matches);
+        }
+
+        categoryLabel.setText("Category Total: ₹" + Money.format(result.totalMinor));
+        if (result.archiveFailure != null && result.archiveFailure != shownArchiveFailure) {
+            JOptionPane.showMessageDialog(this, "❌ Could not search archived expenses.");
+        }
+        shownArchiveFailure = result.archiveFailure;
+    }
+
+    private void updateTotals() {
+        totalLabel.setText("Total: ₹" + Money.format(expenses.totalMinor()));
+    }
+
+    private void loadExpensesFromFile() {
+        // Without a snapshot there is nothing to stream, only journaled expenses to replay
+        if (!snapshotFile.exists()) {
+            try {
+                expenses.load(null);
+                enableEditing();
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to load data.");
+            }
+            return;
+        }
+
+        loadProgress = new JProgressBar(0, 100);
+        loadProgress.setStringPainted(true);
+        JButton cancelButton = new JButton("Cancel");
+
+        loadPanel = new JPanel();
+        loadPanel.add(new JLabel("Loading:"));
+        loadPanel.add(loadProgress);
+        loadPanel.add(cancelButton);
+        bottomPanel.add(loadPanel);
+        bottomPanel.revalidate();
+
+        // Edits wait for the load, journaled row ids must follow the file's rows
+        addButton.setEnabled(false);
+        exportButton.setEnabled(false);
+        importButton.setEnabled(false);
+
+        loadWorker = new ExpenseLoadWorker(expenses);
+        loadWorker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                loadProgress.setValue((Integer) evt.getNewValue());
+            } else if (loadWorker.isDone() && "state".equals(evt.getPropertyName())) {
+                onLoadFinished();
+            }
+        });
+        cancelButton.addActionListener(e -> loadWorker.cancel(false));
+        loadWorker.execute();
+    }
+
+    private void onLoadFinished() {
+        bottomPanel.remove(loadPanel);
+        bottomPanel.revalidate();
+        bottomPanel.repaint();
+
+        // A partial ledger stays read-only so it can never be written over the full file
+        if (loadWorker.isCancelled()) {
+            JOptionPane.showMessageDialog(this, "⚠️ Loading cancelled after " + loadWorker.getLoadedCount()
+                    + " expenses. Reopen the tracker to make changes.");
+            return;
+        }
+
+        try {
+            ParallelCsvImporter.Report report = loadWorker.get();
+            enableEditing();
+            if (report.malformedCount() > 0) {
+                JOptionPane.showMessageDialog(this, "⚠️ Skipped " + report.malformedCount() + " malformed lines:\n"
+                        + report.describe(10));
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            JOptionPane.showMessageDialog(this, "❌ Failed to load data.");
+        }
+    }
+
+    private void enableEditing() {
+        updateTotals();
+        addButton.setEnabled(true);
+        exportButton.setEnabled(true);
+        importButton.setEnabled(true);
+    }
+
+    public static void main(String[] args) {
+        ExpenseMetrics.watchEventDispatch();
+        SwingUtilities.invokeLater(AdvancedExpenseTracker::new);
+    }
+}
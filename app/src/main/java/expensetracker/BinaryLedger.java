@@ -0,0 +1,291 @@
+package expensetracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Versioned binary ledger, read through memory-mapped sections.
+//
+// Layout (little-endian):
+//   header      "EXPL", version, rowCount, categoryCount, descriptionCount, 0,
+//               then the byte offset of each section below as a long
+//   days        int[rowCount]     epoch day
+//   categories  int[rowCount]     category id
+//   amounts     long[rowCount]    minor units
+//   descIds     int[rowCount]     description id
+//   category    string table: UTF-8 bytes, then long[categoryCount + 1] offsets
+//   description string table, same shape
+//
+// Opening maps the file and reads nothing else; rows and strings are decoded from the
+// mapping on access. The columns are fixed width, so a row is found by arithmetic.
+class BinaryLedger {
+    public static final String EXTENSION = ".ledger";
+
+    private static final int MAGIC = 0x4C505845;  // "EXPL" read little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24 + 8 * 8;
+
+    private final int rowCount;
+    private final IntBuffer days;
+    private final IntBuffer categoryIds;
+    private final LongBuffer amounts;
+    private final IntBuffer descriptionIds;
+    private final StringTable categories;
+    private final StringTable descriptions;
+
+    private BinaryLedger(FileChannel channel) throws IOException {
+        ByteBuffer header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) throw new IOException("Not an expense ledger");
+        if (header.getInt(4) != VERSION) throw new IOException("Unsupported ledger version " + header.getInt(4));
+
+        rowCount = header.getInt(8);
+        int categoryCount = header.getInt(12);
+        int descriptionCount = header.getInt(16);
+
+        days = map(channel, header.getLong(24), 4L * rowCount).asIntBuffer();
+        categoryIds = map(channel, header.getLong(32), 4L * rowCount).asIntBuffer();
+        amounts = map(channel, header.getLong(40), 8L * rowCount).asLongBuffer();
+        descriptionIds = map(channel, header.getLong(48), 4L * rowCount).asIntBuffer();
+        categories = new StringTable(channel, header.getLong(56), header.getLong(64), categoryCount);
+        descriptions = new StringTable(channel, header.getLong(72), header.getLong(80), descriptionCount);
+    }
+
+    public static BinaryLedger open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new BinaryLedger(channel);
+        }
+    }
+
+    public static boolean isLedger(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE) return false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) throw new IOException("Ledger section too large to map");
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int epochDay(int row) {
+        return days.get(row);
+    }
+
+    public int categoryId(int row) {
+        return categoryIds.get(row);
+    }
+
+    public long amountMinor(int row) {
+        return amounts.get(row);
+    }
+
+    public int descriptionId(int row) {
+        return descriptionIds.get(row);
+    }
+
+    public String category(int categoryId) {
+        return categories.get(categoryId);
+    }
+
+    public String description(int descriptionId) {
+        return descriptions.get(descriptionId);
+    }
+
+    // Copies rows [from, to) into a store, decoding each distinct string once
+    public void readInto(ExpenseStore store, int from, int to) {
+        for (int row = from; row < to; row++) {
+            store.add(days.get(row), categories.get(categoryIds.get(row)), amounts.get(row),
+                    descriptions.get(descriptionIds.get(row)));
+        }
+    }
+
+    // Written to a temporary file first and moved into place, so a crash never leaves
+    // a half-written ledger behind. Deleted rows are left out.
+    public static void write(ExpenseStore store, File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        int rows = store.count();
+        int[] live = liveRows(store);
+
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel, HEADER_SIZE);
+
+            long daysAt = out.position();
+            for (int row : live) out.putInt(store.epochDay(row));
+            long categoriesAt = out.position();
+            for (int row : live) out.putInt(store.categoryId(row));
+            long amountsAt = out.position();
+            for (int row : live) out.putLong(store.amountMinor(row));
+            long descriptionsAt = out.position();
+            for (int row : live) out.putInt(store.descriptionId(row));
+
+            long categoryBytesAt = out.position();
+            long[] categoryOffsets = new long[store.categoryCount() + 1];
+            for (int id = 0; id < store.categoryCount(); id++) {
+                out.putBytes(store.categoryName(id).getBytes(StandardCharsets.UTF_8));
+                categoryOffsets[id + 1] = out.position() - categoryBytesAt;
+            }
+            long categoryOffsetsAt = out.position();
+            for (long offset : categoryOffsets) out.putLong(offset);
+
+            long descriptionBytesAt = out.position();
+            long[] descriptionOffsets = new long[store.descriptionCount() + 1];
+            for (int id = 0; id < store.descriptionCount(); id++) {
+                out.putBytes(store.descriptionText(id).getBytes(StandardCharsets.UTF_8));
+                descriptionOffsets[id + 1] = out.position() - descriptionBytesAt;
+            }
+            long descriptionOffsetsAt = out.position();
+            for (long offset : descriptionOffsets) out.putLong(offset);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(store.categoryCount())
+                    .putInt(store.descriptionCount()).putInt(0)
+                    .putLong(daysAt).putLong(categoriesAt).putLong(amountsAt).putLong(descriptionsAt)
+                    .putLong(categoryBytesAt).putLong(categoryOffsetsAt)
+                    .putLong(descriptionBytesAt).putLong(descriptionOffsetsAt);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+            channel.force(true);
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int[] liveRows(ExpenseStore store) {
+        int[] live = new int[store.count()];
+        for (int row = 0, n = 0; row < store.size(); row++) {
+            if (!store.isDeleted(row)) live[n++] = row;
+        }
+        return live;
+    }
+
+    // Reads the CSV ledger with its journal and deletions, so edits not yet saved into
+    // the CSV carry over. The CSV's files are only read, never compacted.
+    public static void importCsv(File csv, File ledger) throws IOException {
+        ExpenseEngine engine = new ExpenseEngine();
+        ParallelCsvImporter.Report report = engine.loadCopy(csv);
+        engine.writeLedger(ledger);
+        System.out.println("Imported " + engine.count() + " expenses");
+        if (report.malformedCount() > 0) {
+            System.err.print("Skipped " + report.malformedCount() + " malformed lines:\n" + report.describe(report.reported().size()));
+        }
+    }
+
+    public static void exportCsv(File ledger, File csv) throws IOException {
+        BinaryLedger in = open(ledger);
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8), 1 << 16))) {
+            for (int row = 0; row < in.rowCount; row++) {
+                writer.println(ExpenseStore.toCSV(in.epochDay(row), in.category(in.categoryId(row)),
+                        in.amountMinor(row), in.description(in.descriptionId(row))));
+            }
+            if (writer.checkError()) throw new IOException("Failed to write " + csv);
+        }
+        System.out.println("Exported " + in.rowCount + " expenses");
+    }
+
+    // java -cp expense-tracker.jar expensetracker.BinaryLedger import advanced_expenses.csv advanced_expenses.ledger
+    // java -cp expense-tracker.jar expensetracker.BinaryLedger export advanced_expenses.ledger advanced_expenses.csv
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("import")) {
+            importCsv(new File(args[1]), new File(args[2]));
+        } else if (args.length == 3 && args[0].equals("export")) {
+            exportCsv(new File(args[1]), new File(args[2]));
+        } else {
+            System.err.println("Usage: expensetracker.BinaryLedger import <csv> <ledger> | export <ledger> <csv>");
+            System.exit(1);
+        }
+    }
+
+    // Strings are decoded on first access and kept, so each distinct one is decoded once
+    private static class StringTable {
+        private final ByteBuffer bytes;
+        private final LongBuffer offsets;
+        private final String[] decoded;
+
+        StringTable(FileChannel channel, long bytesAt, long offsetsAt, int count) throws IOException {
+            offsets = map(channel, offsetsAt, 8L * (count + 1)).asLongBuffer();
+            bytes = map(channel, bytesAt, offsets.get(count));
+            decoded = new String[count];
+        }
+
+        String get(int id) {
+            String s = decoded[id];
+            if (s == null) {
+                int start = (int) offsets.get(id);
+                byte[] utf8 = new byte[(int) offsets.get(id + 1) - start];
+                bytes.get(start, utf8);
+                s = new String(utf8, StandardCharsets.UTF_8);
+                decoded[id] = s;
+            }
+            return s;
+        }
+    }
+
+    // Buffered little-endian writer over a channel
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Output(FileChannel channel, long start) {
+            this.channel = channel;
+            this.position = start;
+        }
+
+        long position() {
+            return position + buf.position();
+        }
+
+        void putInt(int value) throws IOException {
+            if (buf.remaining() < 4) flush();
+            buf.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            if (buf.remaining() < 8) flush();
+            buf.putLong(value);
+        }
+
+        void putBytes(byte[] value) throws IOException {
+            int offset = 0;
+            while (offset < value.length) {
+                if (!buf.hasRemaining()) flush();
+                int n = Math.min(buf.remaining(), value.length - offset);
+                buf.put(value, offset, n);
+                offset += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) position += channel.write(buf, position);
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Monthly budgets, overall and per category, checked as expenses arrive. Each new
+// row is compared against the running month and category-month totals the engine
+// already keeps, so a check is O(1) and nothing before the row is re-read; it works
+// the same under a GUI or a headless import.
+//
+// An alert fires once per budget, month and threshold, when spending first reaches
+// the threshold. If spending later drops below it, e.g. after an edit, it can fire again.
+// Only the current month and later ones are watched, so loading a ledger or importing
+// old statements does not alert on months long gone.
+class BudgetMonitor implements ExpenseEngine.Listener {
+    interface Listener {
+        // Runs on the thread that committed the expense; hand GUI work to the EDT
+        void budgetReached(Alert alert);
+    }
+
+    private static final int[] DEFAULT_THRESHOLDS = {80, 100};
+
+    private final ExpenseEngine expenses;
+    private final int[] thresholds;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Budgets in minor units; a null category key is the overall budget
+    private final Map<String, Long> budgets = new HashMap<>();
+    private final Map<Integer, Long> monthBudgets = new HashMap<>();
+
+    // Thresholds already reached, as a count of thresholds, keyed by budget cell
+    private final Map<String, Integer> reached = new HashMap<>();
+
+    public BudgetMonitor(ExpenseEngine expenses) {
+        this(expenses, DEFAULT_THRESHOLDS);
+    }
+
+    // Percentages of the budget, ascending
+    public BudgetMonitor(ExpenseEngine expenses, int... thresholds) {
+        this.expenses = expenses;
+        this.thresholds = thresholds.clone();
+        expenses.addListener(this);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // Overall budget for every month; 0 removes it
+    public synchronized void setMonthlyBudget(long minor) {
+        setBudget(budgets, null, minor);
+    }
+
+    // Overall budget for one month, in place of the monthly one
+    public synchronized void setMonthlyBudget(int monthKey, long minor) {
+        setBudget(monthBudgets, monthKey, minor);
+    }
+
+    // Budget for one category in every month
+    public synchronized void setCategoryBudget(String category, long minor) {
+        setBudget(budgets, category, minor);
+    }
+
+    // A changed budget is checked afresh on the next expense in each month
+    private <K> void setBudget(Map<K, Long> map, K key, long minor) {
+        if (minor < 0) throw new IllegalArgumentException("Budget cannot be negative");
+        if (minor == 0) {
+            map.remove(key);
+        } else {
+            map.put(key, minor);
+        }
+        reached.clear();
+    }
+
+    // 0 when the month has no overall budget
+    public synchronized long monthlyBudget(int monthKey) {
+        Long budget = monthBudgets.get(monthKey);
+        if (budget == null) budget = budgets.get(null);
+        return budget == null ? 0 : budget;
+    }
+
+    public synchronized long categoryBudget(String category) {
+        return budgets.getOrDefault(category, 0L);
+    }
+
+    @Override
+    public void expensesAppended(int firstRow, int count) {
+        List<Alert> alerts = new ArrayList<>();
+        ExpenseStore.Snapshot rows = expenses.snapshot();
+        synchronized (this) {
+            if (budgets.isEmpty() && monthBudgets.isEmpty()) return;
+
+            int currentMonth = currentMonth();
+            int lastMonth = Integer.MIN_VALUE;
+            String lastCategory = null;
+            for (int row = firstRow; row < firstRow + count; row++) {
+                int monthKey = Dates.monthKey(rows.epochDay(row));
+                if (monthKey < currentMonth) continue;
+                String category = rows.category(row);
+                // Imports run in date order, so runs of one month and category are common
+                if (monthKey == lastMonth && category.equals(lastCategory)) continue;
+                lastMonth = monthKey;
+                lastCategory = category;
+                check(null, monthKey, alerts);
+                check(category, monthKey, alerts);
+            }
+        }
+        fire(alerts);
+    }
+
+    // Which rows changed is not known, and an edit may move spending into any month, so
+    // every budget of every watched month is re-checked, as are the months tracked so far
+    // in case their rows went
+    @Override
+    public void expensesChanged() {
+        List<Alert> alerts = new ArrayList<>();
+        synchronized (this) {
+            if (budgets.isEmpty() && monthBudgets.isEmpty()) return;
+
+            int currentMonth = currentMonth();
+            if (expenses.count() > 0) {
+                for (int monthKey = currentMonth; monthKey < (expenses.lastYear() + 1) * 12; monthKey++) {
+                    for (String category : budgets.keySet()) {
+                        if (category != null) check(category, monthKey, alerts);
+                    }
+                    check(null, monthKey, alerts);
+                }
+            }
+            for (String cell : new ArrayList<>(reached.keySet())) {
+                int comma = cell.indexOf(',');
+                int monthKey = Integer.parseInt(comma < 0 ? cell : cell.substring(0, comma));
+                if (monthKey < currentMonth) {
+                    reached.remove(cell);
+                    continue;
+                }
+                check(comma < 0 ? null : cell.substring(comma + 1), monthKey, alerts);
+            }
+        }
+        fire(alerts);
+    }
+
+    private static int currentMonth() {
+        return Dates.monthKey((int) LocalDate.now().toEpochDay());
+    }
+
+    private void check(String category, int monthKey, List<Alert> alerts) {
+        long budget = category == null ? monthlyBudget(monthKey) : categoryBudget(category);
+        if (budget == 0) return;
+
+        long spent = category == null ? expenses.monthTotal(monthKey) : expenses.categoryMonthTotal(category, monthKey);
+        int level = 0;
+        while (level < thresholds.length && spent * 100 >= budget * thresholds[level]) level++;
+
+        // Categories cannot contain a comma, so the key is unambiguous
+        String cell = category == null ? Integer.toString(monthKey) : monthKey + "," + category;
+        int before = reached.getOrDefault(cell, 0);
+        if (level == before) return;
+        reached.put(cell, level);
+        // Only the highest threshold crossed is reported, not every one on the way
+        if (level > before) alerts.add(new Alert(category, monthKey, spent, budget, thresholds[level - 1]));
+    }
+
+    private void fire(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            for (Listener listener : listeners) listener.budgetReached(alert);
+        }
+    }
+
+    static final class Alert {
+        private final String category;
+        private final int monthKey;
+        private final long spentMinor;
+        private final long budgetMinor;
+        private final int percent;
+
+        Alert(String category, int monthKey, long spentMinor, long budgetMinor, int percent) {
+            this.category = category;
+            this.monthKey = monthKey;
+            this.spentMinor = spentMinor;
+            this.budgetMinor = budgetMinor;
+            this.percent = percent;
+        }
+
+        // Null for the overall budget
+        public String category() {
+            return category;
+        }
+
+        public int monthKey() {
+            return monthKey;
+        }
+
+        public long spentMinor() {
+            return spentMinor;
+        }
+
+        public long budgetMinor() {
+            return budgetMinor;
+        }
+
+        // The threshold reached, e.g. 80 or 100
+        public int percent() {
+            return percent;
+        }
+
+        @Override
+        public String toString() {
+            return (category == null ? "Monthly" : category) + " budget for " + Period.MONTH.format(monthKey)
+                    + " is " + percent + "% used: " + Money.format(spentMinor) + " of " + Money.format(budgetMinor);
+        }
+    }
+}
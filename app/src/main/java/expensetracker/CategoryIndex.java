@@ -0,0 +1,107 @@
+package expensetracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Inverted index from category id to the ascending row ids that use it, plus a
+// trigram index over the lowercased category names for substring search.
+// Searches touch the dictionary of distinct categories and the matching posting
+// lists only, never every row.
+class CategoryIndex {
+    private final List<PostingList> postings = new ArrayList<>();
+    private final List<String> lowerNames = new ArrayList<>();
+    private final Map<Long, IntList> trigrams = new HashMap<>();
+
+    // Rows are added in ascending order
+    public void add(int row, int categoryId, String categoryName) {
+        postingsFor(categoryId, categoryName).add(row);
+    }
+
+    public void move(int row, int oldCategoryId, int newCategoryId, String newCategoryName) {
+        if (oldCategoryId == newCategoryId) return;
+        postings.get(oldCategoryId).remove(row);
+        postingsFor(newCategoryId, newCategoryName).insert(row);
+    }
+
+    public void remove(int row, int categoryId) {
+        postings.get(categoryId).remove(row);
+    }
+
+    // A restored row goes back in order
+    public void insert(int row, int categoryId, String categoryName) {
+        postingsFor(categoryId, categoryName).insert(row);
+    }
+
+    public void clear() {
+        postings.clear();
+        lowerNames.clear();
+        trigrams.clear();
+    }
+
+    private PostingList postingsFor(int categoryId, String categoryName) {
+        while (postings.size() <= categoryId) {
+            postings.add(new PostingList());
+            lowerNames.add(null);
+        }
+        if (lowerNames.get(categoryId) == null) addName(categoryId, categoryName);
+        return postings.get(categoryId);
+    }
+
+    private void addName(int categoryId, String categoryName) {
+        String lower = categoryName.toLowerCase(Locale.ROOT);
+        lowerNames.set(categoryId, lower);
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            IntList ids = trigrams.computeIfAbsent(trigram(lower, i), k -> new IntList(4));
+            if (ids.isEmpty() || ids.get(ids.size() - 1) != categoryId) ids.add(categoryId);
+        }
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    // Rows of exactly this category, ascending. Do not modify the returned list.
+    public IntList rows(int categoryId) {
+        return categoryId >= 0 && categoryId < postings.size() ? postings.get(categoryId).rows() : new IntList(1);
+    }
+
+    // Ids of the categories whose name contains the query, ignoring case
+    public IntList matchingCategories(String query) {
+        String lower = query.toLowerCase(Locale.ROOT);
+        IntList matches = new IntList();
+
+        if (lower.length() < 3) {
+            for (int id = 0; id < lowerNames.size(); id++) {
+                if (lowerNames.get(id) != null && lowerNames.get(id).contains(lower)) matches.add(id);
+            }
+            return matches;
+        }
+
+        // The rarest trigram of the query bounds the candidates, which are then verified
+        IntList candidates = null;
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            IntList ids = trigrams.get(trigram(lower, i));
+            if (ids == null) return matches;
+            if (candidates == null || ids.size() < candidates.size()) candidates = ids;
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            int id = candidates.get(i);
+            if (lowerNames.get(id).contains(lower)) matches.add(id);
+        }
+        return matches;
+    }
+
+    // Rows whose category contains the query, ascending. The result is a fresh list.
+    public IntList search(String query) {
+        return rows(matchingCategories(query));
+    }
+
+    public IntList rows(IntList categoryIds) {
+        List<IntList> lists = new ArrayList<>(categoryIds.size());
+        for (int i = 0; i < categoryIds.size(); i++) lists.add(rows(categoryIds.get(i)));
+        return IntList.unionAll(lists);
+    }
+}
@@ -0,0 +1,147 @@
+package expensetracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rows bucketed by calendar month. Buckets sit in a list indexed by month key,
+// so a month is one lookup, a year is twelve, and a date range is a run of whole
+// buckets plus a check of the two partial months at its ends.
+class DateIndex {
+    private final List<PostingList> buckets = new ArrayList<>();
+    private int firstMonthKey;
+    private int minDay = Integer.MAX_VALUE;
+    private int maxDay = Integer.MIN_VALUE;
+
+    // Rows are added in ascending order
+    public void add(int row, int epochDay) {
+        bucket(Dates.monthKey(epochDay)).add(row);
+        minDay = Math.min(minDay, epochDay);
+        maxDay = Math.max(maxDay, epochDay);
+    }
+
+    public void move(int row, int oldDay, int newDay) {
+        int oldMonth = Dates.monthKey(oldDay);
+        int newMonth = Dates.monthKey(newDay);
+        if (oldMonth != newMonth) {
+            bucket(oldMonth).remove(row);
+            bucket(newMonth).insert(row);
+        }
+        minDay = Math.min(minDay, newDay);
+        maxDay = Math.max(maxDay, newDay);
+    }
+
+    // The range of days is left as it was, it only ever widens
+    public void remove(int row, int epochDay) {
+        bucket(Dates.monthKey(epochDay)).remove(row);
+    }
+
+    public void insert(int row, int epochDay) {
+        bucket(Dates.monthKey(epochDay)).insert(row);
+        minDay = Math.min(minDay, epochDay);
+        maxDay = Math.max(maxDay, epochDay);
+    }
+
+    public void clear() {
+        buckets.clear();
+        minDay = Integer.MAX_VALUE;
+        maxDay = Integer.MIN_VALUE;
+    }
+
+    private PostingList bucket(int monthKey) {
+        if (buckets.isEmpty()) firstMonthKey = monthKey;
+        while (monthKey < firstMonthKey) {
+            buckets.add(0, null);
+            firstMonthKey--;
+        }
+        while (monthKey >= firstMonthKey + buckets.size()) buckets.add(null);
+
+        PostingList bucket = buckets.get(monthKey - firstMonthKey);
+        if (bucket == null) {
+            bucket = new PostingList();
+            buckets.set(monthKey - firstMonthKey, bucket);
+        }
+        return bucket;
+    }
+
+    private PostingList existingBucket(int monthKey) {
+        int index = monthKey - firstMonthKey;
+        return index >= 0 && index < buckets.size() ? buckets.get(index) : null;
+    }
+
+    public boolean isEmpty() {
+        return minDay > maxDay;
+    }
+
+    // Smallest and largest epoch day ever added, only meaningful when not empty
+    public int minDay() {
+        return minDay;
+    }
+
+    public int maxDay() {
+        return maxDay;
+    }
+
+    public int firstYear() {
+        return Dates.year(minDay);
+    }
+
+    public int lastYear() {
+        return Dates.year(maxDay);
+    }
+
+    // Rows of one calendar month, ascending. Do not modify the returned list.
+    public IntList rowsInMonth(int monthKey) {
+        PostingList bucket = existingBucket(monthKey);
+        return bucket == null ? new IntList(1) : bucket.rows();
+    }
+
+    public IntList rowsInYear(int year) {
+        List<IntList> lists = new ArrayList<>(12);
+        for (int month = 0; month < 12; month++) addIfPresent(lists, year * 12 + month);
+        return IntList.unionAll(lists);
+    }
+
+    // month is 1-12; the same month of every year in the ledger
+    public IntList rowsInMonthOfAnyYear(int month) {
+        if (isEmpty()) return new IntList(1);
+        List<IntList> lists = new ArrayList<>();
+        for (int year = firstYear(); year <= lastYear(); year++) addIfPresent(lists, year * 12 + month - 1);
+        return IntList.unionAll(lists);
+    }
+
+    // Inclusive range of epoch days; only the first and last month are filtered row by row
+    public IntList rowsBetween(int fromDay, int toDay, ExpenseStore store) {
+        if (isEmpty() || fromDay > toDay) return new IntList(1);
+        fromDay = Math.max(fromDay, minDay);
+        toDay = Math.min(toDay, maxDay);
+
+        List<IntList> lists = new ArrayList<>();
+        int firstMonth = Dates.monthKey(fromDay);
+        int lastMonth = Dates.monthKey(toDay);
+        for (int monthKey = firstMonth; monthKey <= lastMonth; monthKey++) {
+            PostingList existing = existingBucket(monthKey);
+            if (existing == null || existing.isEmpty()) continue;
+            IntList bucket = existing.rows();
+
+            boolean partial = (monthKey == firstMonth && fromDay > Dates.firstDayOfMonth(monthKey))
+                    || (monthKey == lastMonth && toDay < Dates.firstDayOfMonth(monthKey + 1) - 1);
+            if (!partial) {
+                lists.add(bucket);
+                continue;
+            }
+
+            IntList inRange = new IntList();
+            for (int i = 0; i < bucket.size(); i++) {
+                int day = store.epochDay(bucket.get(i));
+                if (day >= fromDay && day <= toDay) inRange.add(bucket.get(i));
+            }
+            lists.add(inRange);
+        }
+        return IntList.unionAll(lists);
+    }
+
+    private void addIfPresent(List<IntList> lists, int monthKey) {
+        PostingList bucket = existingBucket(monthKey);
+        if (bucket != null && !bucket.isEmpty()) lists.add(bucket.rows());
+    }
+}
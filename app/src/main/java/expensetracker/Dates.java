@@ -0,0 +1,149 @@
+package expensetracker;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+// Calendar arithmetic on epoch days (days since 1970-01-01), so per-row date
+// checks in scans and indexes do not allocate a LocalDate. Also the parsers and
+// formatters for the two date formats the trackers use, yyyy-MM-dd and dd-MM-yyyy,
+// working on bytes or chars with no DateTimeFormatter or intermediate String.
+final class Dates {
+    // Returned by the parsers for text that is not a valid date in their format
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private Dates() {
+    }
+
+    // Proleptic Gregorian conversion, see Howard Hinnant's "days_from_civil"
+    public static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    public static boolean isValid(int year, int month, int day) {
+        return month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month);
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // year * 12 + (month - 1), a dense sortable key for a calendar month
+    public static int monthKey(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    public static int year(int epochDay) {
+        return Math.floorDiv(monthKey(epochDay), 12);
+    }
+
+    // 1-12
+    public static int month(int epochDay) {
+        return Math.floorMod(monthKey(epochDay), 12) + 1;
+    }
+
+    public static int firstDayOfMonth(int monthKey) {
+        return epochDay(Math.floorDiv(monthKey, 12), Math.floorMod(monthKey, 12) + 1, 1);
+    }
+
+    // yyyy-MM-dd from buf[start, end)
+    public static int parseIso(byte[] buf, int start, int end) {
+        if (end - start != 10 || buf[start + 4] != '-' || buf[start + 7] != '-') return NO_DATE;
+        return valid(digits(buf, start, start + 4), digits(buf, start + 5, start + 7), digits(buf, start + 8, start + 10));
+    }
+
+    public static int parseIso(CharSequence text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') return NO_DATE;
+        return valid(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10));
+    }
+
+    public static int parseDayMonthYear(CharSequence text) {
+        if (text.length() != 10 || text.charAt(2) != '-' || text.charAt(5) != '-') return NO_DATE;
+        return valid(digits(text, 6, 10), digits(text, 3, 5), digits(text, 0, 2));
+    }
+
+    // For input typed by a user, where a bad date is an error to report
+    public static int requireIso(String text) {
+        int epochDay = parseIso(text.trim());
+        if (epochDay == NO_DATE) throw new DateTimeException("Expected a yyyy-MM-dd date: " + text);
+        return epochDay;
+    }
+
+    public static int requireDayMonthYear(String text) {
+        int epochDay = parseDayMonthYear(text.trim());
+        if (epochDay == NO_DATE) throw new DateTimeException("Expected a dd-MM-yyyy date: " + text);
+        return epochDay;
+    }
+
+    private static int valid(int year, int month, int day) {
+        if (year < 0 || !isValid(year, month, day)) return NO_DATE;
+        return epochDay(year, month, day);
+    }
+
+    // -1 unless every byte is a digit
+    private static int digits(byte[] buf, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static int digits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = text.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    // Same text as LocalDate.toString()
+    public static StringBuilder appendIso(StringBuilder sb, int epochDay) {
+        int monthKey = monthKey(epochDay);
+        int year = Math.floorDiv(monthKey, 12);
+        // Years LocalDate writes with a sign or more digits are left to it
+        if (year < 0 || year > 9999) return sb.append(LocalDate.ofEpochDay(epochDay));
+        pad(sb, year, 4).append('-');
+        pad(sb, Math.floorMod(monthKey, 12) + 1, 2).append('-');
+        return pad(sb, epochDay - firstDayOfMonth(monthKey) + 1, 2);
+    }
+
+    public static String formatIso(int epochDay) {
+        return appendIso(new StringBuilder(10), epochDay).toString();
+    }
+
+    public static String formatDayMonthYear(int epochDay) {
+        int monthKey = monthKey(epochDay);
+        StringBuilder sb = new StringBuilder(10);
+        pad(sb, epochDay - firstDayOfMonth(monthKey) + 1, 2).append('-');
+        pad(sb, Math.floorMod(monthKey, 12) + 1, 2).append('-');
+        return pad(sb, Math.floorDiv(monthKey, 12), 4).toString();
+    }
+
+    private static StringBuilder pad(StringBuilder sb, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) sb.append('0');
+        }
+        return sb.append(value);
+    }
+}
@@ -0,0 +1,98 @@
+package expensetracker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Undo and redo stacks of a ledger's edits. A step names the rows it touched and,
+// for an update, the values on either side; the ledger itself is never copied, since
+// deleted rows keep their values and ids. Steps are undone newest first, so a step
+// always finds its rows as it left them. Guarded by the engine's commit lock.
+final class EditHistory {
+    private static final int MAX_STEPS = 100;
+
+    enum Kind {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+
+    static final class Step {
+        final Kind kind;
+        // The rows added or deleted, or the one row updated
+        final IntList rows;
+        // Updates only: row 0 holds the values before, row 1 the values after
+        final ExpenseStore values;
+
+        private Step(Kind kind, IntList rows, ExpenseStore values) {
+            this.kind = kind;
+            this.rows = rows;
+            this.values = values;
+        }
+
+        static Step added(int firstRow, int count) {
+            IntList rows = new IntList(count);
+            for (int i = 0; i < count; i++) rows.add(firstRow + i);
+            return new Step(Kind.ADD, rows, null);
+        }
+
+        static Step updated(int row, ExpenseStore.Snapshot before, int epochDay, String category, long amountMinor, String description) {
+            ExpenseStore values = new ExpenseStore(2, false);
+            values.add(before.epochDay(row), before.category(row), before.amountMinor(row), before.description(row));
+            values.add(epochDay, category, amountMinor, description);
+            IntList rows = new IntList(1);
+            rows.add(row);
+            return new Step(Kind.UPDATE, rows, values);
+        }
+
+        static Step deleted(IntList rows) {
+            return new Step(Kind.DELETE, rows, null);
+        }
+
+        // e.g. "Delete 3 expenses", for Undo and Redo menu items
+        String describe() {
+            int n = rows.size();
+            String expenses = n == 1 ? "expense" : n + " expenses";
+            switch (kind) {
+                case ADD:
+                    return "Add " + expenses;
+                case UPDATE:
+                    return "Edit " + expenses;
+                default:
+                    return "Delete " + expenses;
+            }
+        }
+    }
+
+    private final Deque<Step> undo = new ArrayDeque<>();
+    private final Deque<Step> redo = new ArrayDeque<>();
+
+    // A new edit ends the redo trail; the oldest step goes once there are too many
+    void record(Step step) {
+        redo.clear();
+        undo.addLast(step);
+        if (undo.size() > MAX_STEPS) undo.removeFirst();
+    }
+
+    Step nextUndo() {
+        return undo.peekLast();
+    }
+
+    Step nextRedo() {
+        return redo.peekLast();
+    }
+
+    // Called once the step has been reverted
+    void undone() {
+        redo.addLast(undo.removeLast());
+    }
+
+    // Called once the step has been applied again
+    void redone() {
+        undo.addLast(redo.removeLast());
+    }
+
+    void clear() {
+        undo.clear();
+        redo.clear();
+    }
+}
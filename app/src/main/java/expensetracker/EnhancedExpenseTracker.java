@@ -0,0 +1,258 @@
+package expensetracker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.IOException;
+import java.time.LocalDate;
+
+public class EnhancedExpenseTracker extends JFrame {
+    private JComboBox<String> categoryDropdown;
+    private JTextField amountField;
+    private JTextField dateField;
+    private JTable table;
+    private JLabel totalLabel, budgetLabel;
+    private ExpenseEngine expenses;
+    private ExpenseTableModel model;
+    private JComboBox<String> filterCategory, filterMonth, filterYear;
+    private JTextField fromField, toField;
+    private boolean updatingYears;
+    private BudgetMonitor budgets;
+    // Shown once, not again while the query is refined
+    private IOException shownArchiveFailure;
+
+    public EnhancedExpenseTracker() {
+        setTitle("Enhanced Expense Tracker");
+        setSize(800, 600);
+        setLayout(new BorderLayout());
+
+        expenses = new ExpenseEngine();
+        ExpenseMetrics.start(expenses, "EnhancedExpenseTracker");
+        budgets = new BudgetMonitor(expenses);
+        budgets.addListener(alert -> SwingUtilities.invokeLater(
+                () -> JOptionPane.showMessageDialog(this, "⚠️ " + alert)));
+
+        JPanel topPanel = new JPanel(new GridLayout(2, 3, 4, 4));
+        topPanel.setBorder(BorderFactory.createTitledBorder("Add New Expense"));
+
+        categoryDropdown = new JComboBox<>(new String[]{"Food", "Transport", "Shopping", "Bills", "Others"});
+        amountField = new JTextField();
+        dateField = new JTextField(Dates.formatDayMonthYear((int) LocalDate.now().toEpochDay()));
+
+        topPanel.add(new JLabel("Category:"));
+        topPanel.add(categoryDropdown);
+        topPanel.add(new JLabel("Amount:"));
+        topPanel.add(amountField);
+        topPanel.add(new JLabel("Date (dd-MM-yyyy):"));
+        topPanel.add(dateField);
+
+        JButton addButton = new JButton("Add Expense");
+        topPanel.add(addButton);
+
+        add(topPanel, BorderLayout.NORTH);
+
+        model = new ExpenseTableModel(expenses, ExpenseTableModel.Column.CATEGORY,
+                ExpenseTableModel.Column.AMOUNT, ExpenseTableModel.Column.DAY_MONTH_YEAR);
+        table = new JTable(model);
+        model.sortOnHeaderClick(table);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel midPanel = new JPanel(new GridLayout(0, 2, 10, 10));
+        midPanel.setBorder(BorderFactory.createTitledBorder("Filters and Search"));
+
+        filterCategory = new JComboBox<>(new String[]{"All", "Food", "Transport", "Shopping", "Bills", "Others"});
+        filterMonth = new JComboBox<>(new String[]{"All", "January", "February", "March", "April", "May", "June", 
+                                                   "July", "August", "September", "October", "November", "December"});
+        filterYear = new JComboBox<>(new String[]{"All"});
+        fromField = new JTextField();
+        toField = new JTextField();
+        JTextField searchField = new JTextField();
+        JButton searchButton = new JButton("Search");
+
+        midPanel.add(new JLabel("Filter by Category:"));
+        midPanel.add(filterCategory);
+        midPanel.add(new JLabel("Filter by Month:"));
+        midPanel.add(filterMonth);
+        midPanel.add(new JLabel("Filter by Year:"));
+        midPanel.add(filterYear);
+        midPanel.add(new JLabel("From (dd-MM-yyyy):"));
+        midPanel.add(fromField);
+        midPanel.add(new JLabel("To (dd-MM-yyyy):"));
+        midPanel.add(toField);
+        midPanel.add(new JLabel("Search (Category):"));
+        midPanel.add(searchField);
+        midPanel.add(searchButton);
+
+        add(midPanel, BorderLayout.WEST);
+
+        // Bottom Panel
+        JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        totalLabel = new JLabel("Total Expense: ₹0.00");
+        budgetLabel = new JLabel("Monthly Budget: ₹0.00");
+        JButton setBudgetBtn = new JButton("Set Budget");
+        JButton categoryBudgetBtn = new JButton("Category Budget");
+        JButton clearBtn = new JButton("Clear All");
+        ExpenseEditActions editActions = new ExpenseEditActions(expenses, table, model, true, () -> {
+            updateTotal();
+            refreshYears();
+        });
+        JButton exitBtn = new JButton("Exit");
+
+        bottomPanel.add(totalLabel);
+        bottomPanel.add(budgetLabel);
+        bottomPanel.add(setBudgetBtn);
+        bottomPanel.add(categoryBudgetBtn);
+        editActions.addButtonsTo(bottomPanel);
+        bottomPanel.add(clearBtn);
+        bottomPanel.add(exitBtn);
+
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        // Add Listeners
+        addButton.addActionListener(e -> {
+            try {
+                String category = (String) categoryDropdown.getSelectedItem();
+                long amount = Money.parse(amountField.getText());
+                int date = Dates.requireDayMonthYear(dateField.getText());
+                expenses.add(date, category, amount, "");
+                updateTotal();
+                refreshYears();
+                amountField.setText("");
+                dateField.setText(Dates.formatDayMonthYear((int) LocalDate.now().toEpochDay()));
+            } catch (Exception ex1) {
+                JOptionPane.showMessageDialog(this, "Invalid data format.");
+            }
+        });
+
+        setBudgetBtn.addActionListener(e -> {
+            String input = JOptionPane.showInputDialog("Enter monthly budget:");
+            try {
+                budgets.setMonthlyBudget(Money.parse(input));
+                updateTotal();
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid budget.");
+            }
+        });
+
+        categoryBudgetBtn.addActionListener(e -> {
+            String category = (String) categoryDropdown.getSelectedItem();
+            String input = JOptionPane.showInputDialog("Enter monthly budget for " + category + ":");
+            try {
+                budgets.setCategoryBudget(category, Money.parse(input));
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid budget.");
+            }
+        });
+
+        // Deletes every expense as one step, so Undo brings them all back
+        clearBtn.addActionListener(e -> {
+            try {
+                expenses.delete(expenses.filter(new ExpenseFilter()));
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Could not clear expenses.");
+            }
+            updateTotal();
+            refreshYears();
+        });
+
+        exitBtn.addActionListener(e -> System.exit(0));
+
+        // Search as you type; an empty search goes back to the filters
+        SearchAsYouType search = new SearchAsYouType(expenses, searchField, SearchAsYouType.Mode.CATEGORY_OR_DATE, result -> {
+            if (result.rows == null) {
+                applyFilters();
+            } else {
+                model.showOnly(result.rows, result.archived, result::matches);
+            }
+            if (result.archiveFailure != null && result.archiveFailure != shownArchiveFailure) {
+                JOptionPane.showMessageDialog(this, "Could not search archived expenses.");
+            }
+            shownArchiveFailure = result.archiveFailure;
+        });
+        searchButton.addActionListener(e -> search.searchNow());
+
+        filterCategory.addActionListener(e -> applyFilters());
+        filterMonth.addActionListener(e -> applyFilters());
+        filterYear.addActionListener(e -> {
+            if (!updatingYears) applyFilters();
+        });
+        fromField.addActionListener(e -> applyFilters());
+        toField.addActionListener(e -> applyFilters());
+
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setVisible(true);
+    }
+
+    private void applyFilters() {
+        ExpenseFilter filter = new ExpenseFilter();
+
+        String category = (String) filterCategory.getSelectedItem();
+        if (!category.equals("All")) filter.category(category);
+
+        filter.month(filterMonth.getSelectedIndex());
+        String year = (String) filterYear.getSelectedItem();
+        if (!year.equals("All")) filter.year(Integer.parseInt(year));
+
+        String from = fromField.getText().trim();
+        String to = toField.getText().trim();
+        if (!from.isEmpty() || !to.isEmpty()) {
+            try {
+                int fromDay = from.isEmpty() ? Integer.MIN_VALUE : Dates.requireDayMonthYear(from);
+                int toDay = to.isEmpty() ? Integer.MAX_VALUE : Dates.requireDayMonthYear(to);
+                filter.between(fromDay, toDay);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid date range.");
+                return;
+            }
+        }
+
+        if (filter.isEmpty()) {
+            model.showAll();
+            return;
+        }
+        try {
+            model.showOnly(expenses.filter(filter), expenses.archivedMatches(filter), filter::matches);
+        } catch (IOException ex) {
+            model.showOnly(expenses.filter(filter), filter::matches);
+            JOptionPane.showMessageDialog(this, "Could not read archived expenses.");
+        }
+    }
+
+    private void refreshYears() {
+        int count = expenses.isEmpty() ? 0 : expenses.lastYear() - expenses.firstYear() + 1;
+        if (filterYear.getItemCount() == count + 1
+                && (count == 0 || filterYear.getItemAt(1).equals(String.valueOf(expenses.firstYear())))) {
+            return;
+        }
+
+        Object selected = filterYear.getSelectedItem();
+        updatingYears = true;
+        filterYear.removeAllItems();
+        filterYear.addItem("All");
+        for (int i = 0; i < count; i++) {
+            filterYear.addItem(String.valueOf(expenses.firstYear() + i));
+        }
+        filterYear.setSelectedItem(selected);
+        updatingYears = false;
+    }
+
+    // The budget is for the current month, so it is compared with this month's total
+    private void updateTotal() {
+        totalLabel.setText("Total Expense: ₹" + Money.format(expenses.totalMinor()));
+
+        int monthKey = Dates.monthKey((int) LocalDate.now().toEpochDay());
+        long budget = budgets.monthlyBudget(monthKey);
+        long spent = expenses.monthTotal(monthKey);
+        budgetLabel.setText("Monthly Budget: ₹" + Money.format(spent) + " of ₹" + Money.format(budget));
+        if (budget > 0 && spent > budget) {
+            budgetLabel.setForeground(Color.RED);
+        } else {
+            budgetLabel.setForeground(Color.BLACK);
+        }
+    }
+
+    public static void main(String[] args) {
+        ExpenseMetrics.watchEventDispatch();
+        SwingUtilities.invokeLater(EnhancedExpenseTracker::new);
+    }
+}
@@ -0,0 +1,102 @@
+package expensetracker;
+
+import java.util.Arrays;
+
+// Running totals kept up to date as rows change, so labels, budget checks and
+// reports read a number instead of re-summing the ledger. Totals are rolled up by
+// category and by every Period, alone and crossed with category; a change touches
+// only the cells of its own day, month, year and category. Every update is O(1).
+class ExpenseAggregates {
+    private static final Period[] PERIODS = Period.values();
+
+    private long total;
+    private int count;
+    private long[] categoryTotals = new long[16];
+    // Indexed by Period ordinal
+    private final LongSumMap[] periodTotals = new LongSumMap[PERIODS.length];
+    private final LongSumMap[] categoryPeriodTotals = new LongSumMap[PERIODS.length];
+
+    ExpenseAggregates() {
+        for (int i = 0; i < PERIODS.length; i++) {
+            periodTotals[i] = new LongSumMap();
+            categoryPeriodTotals[i] = new LongSumMap();
+        }
+    }
+
+    public void add(int epochDay, int categoryId, long amountMinor) {
+        apply(epochDay, categoryId, amountMinor);
+        count++;
+    }
+
+    public void remove(int epochDay, int categoryId, long amountMinor) {
+        apply(epochDay, categoryId, -amountMinor);
+        count--;
+    }
+
+    public void update(int oldDay, int oldCategoryId, long oldAmount, int newDay, int newCategoryId, long newAmount) {
+        apply(oldDay, oldCategoryId, -oldAmount);
+        apply(newDay, newCategoryId, newAmount);
+    }
+
+    public void clear() {
+        total = 0;
+        count = 0;
+        Arrays.fill(categoryTotals, 0);
+        for (int i = 0; i < PERIODS.length; i++) {
+            periodTotals[i].clear();
+            categoryPeriodTotals[i].clear();
+        }
+    }
+
+    private void apply(int epochDay, int categoryId, long amountMinor) {
+        if (categoryId >= categoryTotals.length) {
+            categoryTotals = Arrays.copyOf(categoryTotals, Math.max(categoryId + 1, categoryTotals.length * 2));
+        }
+        total += amountMinor;
+        categoryTotals[categoryId] += amountMinor;
+
+        int monthKey = Dates.monthKey(epochDay);
+        apply(Period.DAY, epochDay, categoryId, amountMinor);
+        apply(Period.MONTH, monthKey, categoryId, amountMinor);
+        apply(Period.YEAR, Math.floorDiv(monthKey, 12), categoryId, amountMinor);
+    }
+
+    private void apply(Period period, int key, int categoryId, long amountMinor) {
+        periodTotals[period.ordinal()].add(key, amountMinor);
+        categoryPeriodTotals[period.ordinal()].add(categoryPeriodKey(categoryId, key), amountMinor);
+    }
+
+    private static long categoryPeriodKey(int categoryId, int key) {
+        return ((long) categoryId << 32) | (key & 0xFFFFFFFFL);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long categoryTotal(int categoryId) {
+        return categoryId >= 0 && categoryId < categoryTotals.length ? categoryTotals[categoryId] : 0;
+    }
+
+    // key as produced by period.key
+    public long periodTotal(Period period, int key) {
+        return periodTotals[period.ordinal()].get(key);
+    }
+
+    public long categoryPeriodTotal(int categoryId, Period period, int key) {
+        return categoryId < 0 ? 0 : categoryPeriodTotals[period.ordinal()].get(categoryPeriodKey(categoryId, key));
+    }
+
+    // monthKey as produced by Dates.monthKey
+    public long monthTotal(int monthKey) {
+        return periodTotal(Period.MONTH, monthKey);
+    }
+
+    public long categoryMonthTotal(int categoryId, int monthKey) {
+        return categoryPeriodTotal(categoryId, Period.MONTH, monthKey);
+    }
+}
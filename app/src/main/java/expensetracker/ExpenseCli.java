@@ -0,0 +1,216 @@
+package expensetracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+// Command-line front end of ExpenseEngine for scripts and batch jobs; loads no Swing.
+// Expense rows go to stdout as CSV, counts and totals to stderr, so output pipes cleanly.
+//
+//   java -cp expense-tracker.jar expensetracker.ExpenseCli advanced_expenses.csv summary
+//   java -cp expense-tracker.jar expensetracker.ExpenseCli advanced_expenses.csv filter year=2024 month=3
+public class ExpenseCli {
+    private static final String USAGE = String.join("\n",
+            "Usage: ExpenseCli <ledger.csv|ledger.ledger> <command> [args]",
+            "  summary                               count and totals by category and month",
+            "  report <yyyy|yyyy-MM|yyyy-MM-dd> [n]  change from the period before, daily average, top n categories",
+            "  add <yyyy-MM-dd> <category> <amount> [description]",
+            "  import <file.csv> [budgets]           append every expense of a CSV file",
+            "  import-dir <directory> [budgets]      append every *.csv statement under it, skipping duplicates",
+            "      budgets: budget=AMOUNT and budget.CATEGORY=AMOUNT per month; reaching 80% or 100% is reported",
+            "  search <text>                         expenses whose category or date contains text",
+            "  filter [category=C] [year=Y] [month=1-12] [from=yyyy-MM-dd] [to=yyyy-MM-dd]",
+            "  export <file.csv>                     write every expense not deleted as CSV",
+            "  write-ledger <file.ledger>            write the whole ledger in binary form",
+            "  save                                  fold the journal into the ledger file",
+            "  archive <yyyy>                        move every expense before that year into <ledger>.archive");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) usage();
+
+        ExpenseEngine engine = new ExpenseEngine(new File(args[0]));
+        ExpenseMetrics.start(engine, new File(args[0]).getName());
+        ParallelCsvImporter.Report report = engine.load(null);
+        if (report.malformedCount() > 0) {
+            System.err.print("Skipped " + report.malformedCount() + " malformed lines:\n" + report.describe(10));
+        }
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try {
+            run(engine, args, out);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            out.flush();
+            System.err.println(e.getMessage());
+            usage();
+        } finally {
+            out.flush();
+            // A command is over before the first periodic line, so the totals go out at the end
+            if (ExpenseMetrics.ENABLED) System.err.println(engine.metrics().getSummary());
+        }
+    }
+
+    private static void run(ExpenseEngine engine, String[] args, PrintWriter out) throws IOException, InterruptedException {
+        switch (args[1]) {
+            case "summary":
+                summary(engine, out);
+                break;
+            case "report":
+                if (args.length < 3 || args.length > 4) usage();
+                Period period = Period.of(args[2]);
+                int top = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+                out.print(engine.report(period, period.parse(args[2]), top).describe());
+                break;
+            case "add":
+                if (args.length < 5) usage();
+                int row = engine.add(Dates.requireIso(args[2]), args[3], Money.parse(args[4]),
+                        args.length > 5 ? args[5] : "");
+                System.err.println("Added expense " + row);
+                break;
+            case "import":
+                if (args.length < 3) usage();
+                watchBudgets(engine, args);
+                int before = engine.size();
+                ParallelCsvImporter.Report imported = engine.importCsv(new File(args[2]));
+                System.err.println("Imported " + (engine.size() - before) + " expenses");
+                if (imported.malformedCount() > 0) {
+                    System.err.print("Skipped " + imported.malformedCount() + " malformed lines:\n"
+                            + imported.describe(imported.reported().size()));
+                }
+                break;
+            case "import-dir":
+                if (args.length < 3) usage();
+                watchBudgets(engine, args);
+                StatementImporter.Summary statements = StatementImporter.importDirectory(engine, new File(args[2]));
+                for (StatementImporter.FileResult file : statements.files()) {
+                    System.err.println(file);
+                    for (ParallelCsvImporter.Malformed line : file.malformed()) System.err.println("  " + line);
+                }
+                System.err.println(statements.describe());
+                break;
+            case "search":
+                if (args.length != 3) usage();
+                search(engine, args[2], out);
+                break;
+            case "filter":
+                filter(engine, ExpenseFilter.parse(Arrays.asList(args).subList(2, args.length)), out);
+                break;
+            case "export":
+                if (args.length != 3) usage();
+                engine.exportCsv(new File(args[2]));
+                break;
+            case "write-ledger":
+                if (args.length != 3) usage();
+                engine.writeLedger(new File(args[2]));
+                break;
+            case "save":
+                try {
+                    engine.save().get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Save failed", e.getCause());
+                }
+                break;
+            case "archive":
+                if (args.length != 3) usage();
+                System.err.println("Archived " + engine.archiveBefore(Integer.parseInt(args[2])) + " expenses");
+                break;
+            default:
+                usage();
+        }
+    }
+
+    private static void summary(ExpenseEngine engine, PrintWriter out) {
+        LedgerArchive archive = engine.archive();
+        if (archive.isEmpty()) {
+            out.println("Expenses: " + engine.count());
+        } else {
+            out.println("Expenses: " + (engine.count() + archive.count()) + " (" + archive.count() + " archived, "
+                    + archive.firstYear() + "-" + archive.lastYear() + ")");
+        }
+        out.println("Total: " + Money.format(engine.totalMinor()));
+        if (engine.isEmpty()) return;
+
+        out.println();
+        out.println("By category:");
+        for (String category : engine.categories()) {
+            out.println("  " + category + ": " + Money.format(engine.categoryTotal(category)));
+        }
+
+        out.println();
+        out.println("By month:");
+        for (int monthKey = engine.firstYear() * 12; monthKey < (engine.lastYear() + 1) * 12; monthKey++) {
+            long total = engine.monthTotal(monthKey);
+            if (total != 0) {
+                out.printf("  %04d-%02d: %s%n", monthKey / 12, monthKey % 12 + 1, Money.format(total));
+            }
+        }
+    }
+
+    // Budget arguments follow the file; alerts go to stderr as the rows are committed
+    private static void watchBudgets(ExpenseEngine engine, String[] args) {
+        if (args.length == 3) return;
+        BudgetMonitor budgets = new BudgetMonitor(engine);
+        for (int i = 3; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            String key = eq < 0 ? "" : args[i].substring(0, eq);
+            if (key.equals("budget")) {
+                budgets.setMonthlyBudget(Money.parse(args[i].substring(eq + 1)));
+            } else if (key.startsWith("budget.")) {
+                budgets.setCategoryBudget(key.substring("budget.".length()), Money.parse(args[i].substring(eq + 1)));
+            } else {
+                throw new IllegalArgumentException("Expected budget=AMOUNT or budget.CATEGORY=AMOUNT: " + args[i]);
+            }
+        }
+        budgets.addListener(alert -> System.err.println("Budget: " + alert));
+    }
+
+    // Archived years the filter can match come first, each paged in as it is reached
+    private static void filter(ExpenseEngine engine, ExpenseFilter filter, PrintWriter out) throws IOException {
+        int count = 0;
+        long total = 0;
+        for (int year : engine.archive().years(filter)) {
+            ExpenseEngine archived = engine.archive().year(year);
+            IntList rows = archived.filter(filter);
+            print(archived, rows, out);
+            count += rows.size();
+            total += archived.sumMinor(rows);
+        }
+        IntList rows = engine.filter(filter);
+        print(engine, rows, out);
+        summarize(count + rows.size(), total + engine.sumMinor(rows));
+    }
+
+    private static void search(ExpenseEngine engine, String text, PrintWriter out) throws IOException {
+        int count = 0;
+        long total = 0;
+        for (int year : engine.archive().years()) {
+            ExpenseEngine archived = engine.archive().year(year);
+            IntList rows = archived.search(text);
+            print(archived, rows, out);
+            count += rows.size();
+            total += archived.sumMinor(rows);
+        }
+        IntList rows = engine.search(text);
+        print(engine, rows, out);
+        summarize(count + rows.size(), total + engine.sumMinor(rows));
+    }
+
+    private static void print(ExpenseEngine engine, IntList rows, PrintWriter out) {
+        for (int i = 0; i < rows.size(); i++) out.println(engine.toCSV(rows.get(i)));
+        out.flush();
+    }
+
+    private static void summarize(int count, long totalMinor) {
+        System.err.println(count + " expenses, total " + Money.format(totalMinor));
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,79 @@
+package expensetracker;
+
+import java.nio.charset.StandardCharsets;
+
+// Hand-written tokenizer for "date,category,amount,description" lines.
+// Works directly on the raw bytes of the file so the hot load loop does not
+// go through String.split, LocalDate.parse or Double.parseDouble per row: dates
+// and amounts are read by Dates.parseIso and Money.parse, amounts exactly.
+class ExpenseCsvParser {
+    // Categories repeat on almost every line, so decoded names are cached by their bytes
+    private byte[][] cacheKeys = new byte[256][];
+    private String[] cacheValues = new String[256];
+    private int cacheSize;
+
+    // Appends the line to out, returns false for a malformed line.
+    // buf[start, end) must not include the line terminator.
+    public boolean parseInto(byte[] buf, int start, int end, ExpenseStore out) {
+        if (end > start && buf[end - 1] == '\r') end--;
+
+        int c1 = indexOf(buf, start, end, (byte) ',');
+        if (c1 < 0) return false;
+        int c2 = indexOf(buf, c1 + 1, end, (byte) ',');
+        if (c2 < 0) return false;
+        int c3 = indexOf(buf, c2 + 1, end, (byte) ',');
+        if (c3 < 0) return false;
+
+        int epochDay = Dates.parseIso(buf, start, c1);
+        if (epochDay == Dates.NO_DATE) return false;
+
+        long amountMinor;
+        try {
+            amountMinor = Money.parse(buf, c2 + 1, c3);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        String category = category(buf, c1 + 1, c2);
+        String description = new String(buf, c3 + 1, end - c3 - 1, StandardCharsets.UTF_8);
+        out.add(epochDay, category, amountMinor, description);
+        return true;
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private String category(byte[] buf, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) hash = 31 * hash + buf[i];
+
+        int mask = cacheKeys.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (cacheKeys[slot] != null) {
+            if (sameBytes(cacheKeys[slot], buf, start, end)) return cacheValues[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        String value = new String(buf, start, end - start, StandardCharsets.UTF_8);
+        if (cacheSize * 2 < cacheKeys.length) {
+            byte[] key = new byte[end - start];
+            System.arraycopy(buf, start, key, 0, key.length);
+            cacheKeys[slot] = key;
+            cacheValues[slot] = value;
+            cacheSize++;
+        }
+        return value;
+    }
+
+    private static boolean sameBytes(byte[] key, byte[] buf, int start, int end) {
+        if (key.length != end - start) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buf[start + i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package expensetracker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Streams an expense CSV in 64 KB blocks and hands parsed rows to a listener in
+// batches. Journal compaction streams the snapshot through it; the interactive
+// loader uses ParallelCsvImporter instead.
+class ExpenseCsvReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    interface Listener {
+        // Each batch is a new store the listener may keep; return false to stop reading
+        boolean onBatch(ExpenseStore batch, long bytesRead) throws IOException;
+    }
+
+    // Returns the number of malformed lines that were skipped
+    public static int read(File file, int batchSize, Listener listener) throws IOException {
+        ExpenseCsvParser parser = new ExpenseCsvParser();
+        long read = 0;
+        int skipped = 0;
+
+        ExpenseStore batch = new ExpenseStore(batchSize, false);
+        byte[] buf = new byte[BUFFER_SIZE];
+        int filled = 0;
+
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buf, filled, buf.length - filled)) != -1) {
+                int scanFrom = filled;
+                filled += n;
+                read += n;
+
+                int lineStart = 0;
+                for (int i = scanFrom; i < filled; i++) {
+                    if (buf[i] != '\n') continue;
+                    if (!parseLine(parser, buf, lineStart, i, batch)) skipped++;
+                    lineStart = i + 1;
+                }
+
+                // Keep the trailing partial line for the next read
+                filled -= lineStart;
+                System.arraycopy(buf, lineStart, buf, 0, filled);
+                if (filled == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+
+                if (batch.size() >= batchSize) {
+                    if (!listener.onBatch(batch, read)) return skipped;
+                    batch = new ExpenseStore(batchSize, false);
+                }
+            }
+        }
+
+        if (filled > 0 && !parseLine(parser, buf, 0, filled, batch)) skipped++;
+        if (batch.size() > 0) listener.onBatch(batch, read);
+        return skipped;
+    }
+
+    private static boolean parseLine(ExpenseCsvParser parser, byte[] buf, int start, int end, ExpenseStore batch) {
+        if (end == start || (end - start == 1 && buf[start] == '\r')) return true;
+        return parser.parseInto(buf, start, end, batch);
+    }
+}
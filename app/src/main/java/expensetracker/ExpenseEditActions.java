@@ -0,0 +1,191 @@
+package expensetracker;
+
+import javax.swing.AbstractAction;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import java.awt.Container;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Edit, Delete, Undo and Redo buttons for a tracker's expense table, with Ctrl+Z and
+// Ctrl+Y anywhere in the window and the Delete key on the table. The buttons follow the
+// engine's undo history whichever thread changed it; onChange runs after each action
+// so the tracker can refresh its totals.
+class ExpenseEditActions implements ExpenseEngine.Listener {
+    private final ExpenseEngine expenses;
+    private final JTable table;
+    private final ExpenseTableModel model;
+    private final boolean dayMonthYear;
+    private final Runnable onChange;
+
+    private final JButton editButton = new JButton("Edit");
+    private final JButton deleteButton = new JButton("Delete Selected");
+    private final JButton undoButton = new JButton("Undo");
+    private final JButton redoButton = new JButton("Redo");
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    // dayMonthYear: dates are edited as dd-MM-yyyy rather than yyyy-MM-dd
+    ExpenseEditActions(ExpenseEngine expenses, JTable table, ExpenseTableModel model, boolean dayMonthYear, Runnable onChange) {
+        this.expenses = expenses;
+        this.table = table;
+        this.model = model;
+        this.dayMonthYear = dayMonthYear;
+        this.onChange = onChange;
+
+        editButton.addActionListener(e -> editSelected());
+        deleteButton.addActionListener(e -> deleteSelected());
+        undoButton.addActionListener(e -> undo());
+        redoButton.addActionListener(e -> redo());
+
+        bind(table, JComponent.WHEN_FOCUSED, KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), "deleteExpenses", this::deleteSelected);
+        bind(table, JComponent.WHEN_IN_FOCUSED_WINDOW, KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undoExpense", this::undo);
+        bind(table, JComponent.WHEN_IN_FOCUSED_WINDOW, KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redoExpense", this::redo);
+
+        expenses.addListener(this);
+        refreshButtons();
+    }
+
+    private static void bind(JComponent component, int condition, KeyStroke key, String name, Runnable action) {
+        component.getInputMap(condition).put(key, name);
+        component.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    void addButtonsTo(Container panel) {
+        panel.add(editButton);
+        panel.add(deleteButton);
+        panel.add(undoButton);
+        panel.add(redoButton);
+    }
+
+    private void editSelected() {
+        if (!checkWritable()) return;
+        int[] selected = table.getSelectedRows();
+        if (selected.length != 1) {
+            JOptionPane.showMessageDialog(table, "⚠️ Select one expense to edit.");
+            return;
+        }
+        int row = model.getExpenseIndex(table.convertRowIndexToModel(selected[0]));
+        if (row < 0) {
+            JOptionPane.showMessageDialog(table, "⚠️ Archived expenses are read-only.");
+            return;
+        }
+        ExpenseStore.Snapshot rows = expenses.snapshot();
+
+        int day = rows.epochDay(row);
+        JTextField dateField = new JTextField(dayMonthYear ? Dates.formatDayMonthYear(day) : Dates.formatIso(day));
+        JTextField categoryField = new JTextField(rows.category(row));
+        JTextField amountField = new JTextField(Money.format(rows.amountMinor(row)));
+        JTextField descriptionField = new JTextField(rows.description(row));
+        JPanel fields = new JPanel(new GridLayout(4, 2, 5, 5));
+        fields.add(new JLabel(dayMonthYear ? "Date (dd-MM-yyyy):" : "Date (yyyy-MM-dd):"));
+        fields.add(dateField);
+        fields.add(new JLabel("Category:"));
+        fields.add(categoryField);
+        fields.add(new JLabel("Amount:"));
+        fields.add(amountField);
+        fields.add(new JLabel("Description:"));
+        fields.add(descriptionField);
+        if (JOptionPane.showConfirmDialog(table, fields, "Edit Expense", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+
+        try {
+            int date = dayMonthYear ? Dates.requireDayMonthYear(dateField.getText()) : Dates.requireIso(dateField.getText());
+            String category = categoryField.getText().trim();
+            long amount = Money.parse(amountField.getText());
+            if (category.isEmpty()) throw new IllegalArgumentException("Category is empty");
+            expenses.update(row, date, category, amount, descriptionField.getText());
+            onChange.run();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(table, "❌ Error saving expenses.");
+        } catch (IndexOutOfBoundsException ex) {
+            JOptionPane.showMessageDialog(table, "❌ That expense has been deleted.");
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(table, "❌ Invalid input. Please check your fields.");
+        }
+    }
+
+    private void deleteSelected() {
+        int[] selected = table.getSelectedRows();
+        if (selected.length == 0 || !checkWritable()) return;
+        IntList rows = new IntList(selected.length);
+        for (int index : selected) {
+            int row = model.getExpenseIndex(table.convertRowIndexToModel(index));
+            if (row < 0) {
+                JOptionPane.showMessageDialog(table, "⚠️ Archived expenses are read-only.");
+                return;
+            }
+            rows.add(row);
+        }
+        try {
+            expenses.delete(rows);
+            onChange.run();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(table, "❌ Error saving expenses.");
+        }
+    }
+
+    private void undo() {
+        if (!checkWritable()) return;
+        try {
+            if (expenses.undo()) onChange.run();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(table, "❌ Error saving expenses.");
+        }
+    }
+
+    private void redo() {
+        if (!checkWritable()) return;
+        try {
+            if (expenses.redo()) onChange.run();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(table, "❌ Error saving expenses.");
+        }
+    }
+
+    private boolean checkWritable() {
+        if (expenses.isWritable()) return true;
+        JOptionPane.showMessageDialog(table, "⚠️ Expenses can be changed once loading has finished.");
+        return false;
+    }
+
+    @Override
+    public void expensesAppended(int firstRow, int count) {
+        refreshLater();
+    }
+
+    @Override
+    public void expensesChanged() {
+        refreshLater();
+    }
+
+    // A load appends thousands of batches; one refresh at a time is queued for all of them
+    private void refreshLater() {
+        if (refreshQueued.compareAndSet(false, true)) SwingUtilities.invokeLater(this::refreshButtons);
+    }
+
+    // The tooltips say what would be undone or redone
+    private void refreshButtons() {
+        refreshQueued.set(false);
+        String undo = expenses.undoDescription();
+        String redo = expenses.redoDescription();
+        undoButton.setEnabled(undo != null);
+        undoButton.setToolTipText(undo == null ? null : "Undo: " + undo + " (Ctrl+Z)");
+        redoButton.setEnabled(redo != null);
+        redoButton.setToolTipText(redo == null ? null : "Redo: " + redo + " (Ctrl+Y)");
+    }
+}
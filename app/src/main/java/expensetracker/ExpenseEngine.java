@@ -0,0 +1,1108 @@
+package expensetracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Headless core of the trackers: the ledger, its journal and every query the GUIs
+// run, safe to call from any thread. The Swing frames only turn events into calls and
+// render results; ExpenseCli drives the same API with no display.
+//
+// Writers append into striped buffers picked by thread, so concurrent producers only
+// contend on their own stripe. Whichever writer gets the commit lock drains every
+// stripe, journals all pending rows with one write and one fsync, and merges them
+// into the store: one group commit for many producers. Rows are read lock-free from
+// an immutable snapshot published after each commit; index queries take a read lock
+// the committer only waits on while merging in memory.
+//
+// A persisted ledger may have moved its past years into a LedgerArchive. Totals and
+// reports cover those years too; filters, searches and row ids cover the ledger only,
+// and archive() pages a year in when it is needed.
+//
+// Row ids are stable: rows are appended, updated in place or deleted, which leaves a
+// tombstone under the id. Queries skip deleted rows. Every add, update and delete is a
+// step that undo() reverts and redo() applies again. Lists returned by queries are
+// fresh copies the caller owns.
+public class ExpenseEngine {
+    interface Listener {
+        // Rows [firstRow, firstRow + count) were appended
+        void expensesAppended(int firstRow, int count);
+
+        // Rows were updated, deleted, restored, replayed or cleared; anything derived
+        // should be re-read
+        void expensesChanged();
+    }
+
+    interface LoadProgress {
+        // percent is 0-100; return false to cancel the load
+        boolean onProgress(int rowsLoaded, int percent);
+    }
+
+    private static final int LEDGER_BATCH_SIZE = 10_000;
+    private static final int STRIPE_CAPACITY = 64;
+
+    // Guards the store's indexes and aggregates between queries and merges
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held by the one thread changing the store, so journal order is row order
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final ExpenseStore store = new ExpenseStore();
+    private final Stripe[] stripes = new Stripe[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1)];
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<SortedRows.Key, Sorted> sortedRows = new EnumMap<>(SortedRows.Key.class);
+    // Guarded by the commit lock
+    private final EditHistory history = new EditHistory();
+    private volatile ExpenseStore.Snapshot snapshot = store.snapshot();
+    // Null unless ExpenseMetrics.ENABLED
+    private final ExpenseMetrics metrics = ExpenseMetrics.ENABLED ? new ExpenseMetrics(this) : null;
+
+    // All null for an in-memory ledger
+    private final File snapshotFile;
+    private final ExpenseJournal journal;
+    private final LedgerArchive archive;
+
+    // A persisted ledger accepts writes only after load() has read all of it, so
+    // journaled row ids always follow the snapshot's rows
+    private volatile boolean writable;
+    private boolean loadStarted;
+    private volatile boolean archived;
+
+    // In-memory ledger; nothing is persisted
+    public ExpenseEngine() {
+        this(null, null);
+        this.writable = true;
+    }
+
+    // Ledger persisted as a CSV or binary snapshot plus its journal; call load() first
+    public ExpenseEngine(File snapshotFile) {
+        this(snapshotFile, new ExpenseJournal(snapshotFile));
+    }
+
+    private ExpenseEngine(File snapshotFile, ExpenseJournal journal) {
+        this.snapshotFile = snapshotFile;
+        this.journal = journal;
+        this.archive = snapshotFile == null ? null : new LedgerArchive(snapshotFile);
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
+        if (journal != null) journal.setMetrics(metrics);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    // Null unless metrics are enabled, see ExpenseMetrics
+    public ExpenseMetrics metrics() {
+        return metrics;
+    }
+
+    // Null for an in-memory ledger; empty until load() and while nothing is archived
+    LedgerArchive archive() {
+        return archive;
+    }
+
+    // Read-only ledger of a binary ledger file's rows, e.g. an archived year
+    static ExpenseEngine readOnly(File ledgerFile) throws IOException {
+        ExpenseEngine engine = new ExpenseEngine(null, null);
+        engine.loadLedger(ledgerFile, null);
+        return engine;
+    }
+
+    // Reads the snapshot file, then replays the journal on top and opens the ledger for
+    // writing. A cancelled load leaves the ledger read-only and returns an incomplete
+    // report. progress may be null.
+    public ParallelCsvImporter.Report load(LoadProgress progress) throws IOException {
+        synchronized (this) {
+            if (journal == null || loadStarted) throw new IllegalStateException("Ledger is already loaded");
+            loadStarted = true;
+        }
+
+        long start = ExpenseMetrics.start();
+        // An archiving run cut short is finished first, it may replace the snapshot
+        LedgerArchive.Commit.finish(snapshotFile);
+        archive.open();
+        ParallelCsvImporter.Report report = new ParallelCsvImporter.Report();
+        if (snapshotFile.exists()) {
+            if (BinaryLedger.isLedger(snapshotFile)) {
+                report.stopped = !loadLedger(snapshotFile, progress);
+            } else {
+                report = loadCsv(snapshotFile, progress);
+            }
+            if (!report.isComplete()) return report;
+        }
+
+        commitLock.lock();
+        try {
+            int applied;
+            lock.writeLock().lock();
+            try {
+                applied = journal.replay(store);
+                publish();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (applied > 0 || store.deletedCount() > 0) fireChanged();
+            writable = true;
+        } finally {
+            commitLock.unlock();
+        }
+        if (ExpenseMetrics.ENABLED) metrics.loaded(count(), start);
+        return report;
+    }
+
+    // Reads a persisted ledger into this in-memory one, journal and deletions included,
+    // leaving its files as they are, e.g. to convert it while a tracker has it open
+    ParallelCsvImporter.Report loadCopy(File snapshotFile) throws IOException {
+        if (journal != null || store.size() > 0) throw new IllegalStateException("Not an empty in-memory ledger");
+        ParallelCsvImporter.Report report = new ParallelCsvImporter.Report();
+        if (snapshotFile.exists()) {
+            if (BinaryLedger.isLedger(snapshotFile)) {
+                loadLedger(snapshotFile, null);
+            } else {
+                report = loadCsv(snapshotFile, null);
+            }
+        }
+
+        commitLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                new ExpenseJournal(snapshotFile).read(store);
+                publish();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            fireChanged();
+        } finally {
+            commitLock.unlock();
+        }
+        return report;
+    }
+
+    // Rows are copied out of the mapping into the store, which has to index them and
+    // take edits; only the parsing a CSV needs is saved
+    private boolean loadLedger(File file, LoadProgress progress) throws IOException {
+        BinaryLedger ledger = BinaryLedger.open(file);
+        int rows = ledger.rowCount();
+        for (int from = 0; from < rows; from += LEDGER_BATCH_SIZE) {
+            int to = Math.min(rows, from + LEDGER_BATCH_SIZE);
+            ExpenseStore batch = new ExpenseStore(to - from, false);
+            ledger.readInto(batch, from, to);
+            appendLoaded(batch);
+            if (progress != null && !progress.onProgress(to, (int) (to * 100L / rows))) return false;
+        }
+        return true;
+    }
+
+    private ParallelCsvImporter.Report loadCsv(File file, LoadProgress progress) throws IOException {
+        long length = Math.max(1, file.length());
+        return ParallelCsvImporter.read(file, (batch, bytesRead) -> {
+            int rows = appendLoaded(batch);
+            return progress == null || progress.onProgress(rows, (int) Math.min(100, bytesRead * 100 / length));
+        });
+    }
+
+    // Snapshot file rows are already on disk, so they are not journaled. Returns the
+    // row count after appending.
+    private int appendLoaded(ExpenseStore batch) {
+        commitLock.lock();
+        try {
+            int first = merge(Collections.singletonList(batch))[0];
+            fireAppended(first, batch.size());
+            return first + batch.size();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Returns the new row id once the row is journaled and visible to readers
+    public int add(int epochDay, String category, long amountMinor, String description) throws IOException {
+        checkCategory(category);
+        Stripe stripe = stripes[mix(System.identityHashCode(Thread.currentThread())) & (stripes.length - 1)];
+        Commit commit;
+        int index;
+        synchronized (stripe) {
+            checkWritable();
+            index = stripe.pending.add(epochDay, category, amountMinor, description);
+            commit = stripe.commit;
+        }
+        return awaitCommit(commit) + index;
+    }
+
+    public int add(LocalDate date, String category, double amount, String description) throws IOException {
+        return add((int) date.toEpochDay(), category, Money.toMinor(amount), description);
+    }
+
+    // Appends every row of a batch in one commit; returns the first new row id. Large
+    // batches skip the stripes, copying them in would only add work for the committer.
+    public int addAll(ExpenseStore batch) throws IOException {
+        for (int row = 0; row < batch.size(); row++) checkCategory(batch.category(row));
+        Commit commit = new Commit();
+        commitLock.lock();
+        try {
+            checkWritable();
+            commitPending(batch, commit);
+        } finally {
+            commitLock.unlock();
+        }
+        return commit.firstRow();
+    }
+
+    // Appends every expense of a CSV file, one commit per parsed batch
+    public ParallelCsvImporter.Report importCsv(File csv) throws IOException {
+        return ParallelCsvImporter.read(csv, (batch, bytesRead) -> {
+            addAll(batch);
+            return true;
+        });
+    }
+
+    // Waits until some writer, possibly this one, has committed the stripe batch that
+    // holds the row. Most waits end without committing: the lock holder took it along.
+    private int awaitCommit(Commit commit) throws IOException {
+        while (!commit.isDone()) {
+            commitLock.lock();
+            try {
+                if (!commit.isDone()) commitPending(null, null);
+            } finally {
+                commitLock.unlock();
+            }
+        }
+        return commit.firstRow();
+    }
+
+    // Called with the commit lock held. Takes every stripe's pending rows, plus an
+    // optional extra batch, and commits them together.
+    private void commitPending(ExpenseStore extra, Commit extraCommit) {
+        List<ExpenseStore> batches = new ArrayList<>();
+        List<Commit> commits = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.pending.size() == 0) continue;
+                batches.add(stripe.pending);
+                commits.add(stripe.commit);
+                stripe.pending = new ExpenseStore(STRIPE_CAPACITY, false);
+                stripe.commit = new Commit();
+            }
+        }
+        if (extra != null) {
+            batches.add(extra);
+            commits.add(extraCommit);
+        }
+        if (batches.isEmpty()) return;
+
+        long start = ExpenseMetrics.start();
+        // Journaled first: a failed write leaves neither the file nor the ledger changed
+        try {
+            if (journal != null) journal.recordAdds(batches, store.size());
+        } catch (IOException e) {
+            for (Commit commit : commits) commit.fail(e);
+            return;
+        }
+
+        // Every commit taken along is finished whatever fails from here on, or its writers
+        // would wait for it forever: once merged, the rows are in, and the failure goes
+        // to this writer alone
+        int[] firstRows = null;
+        try {
+            int first = store.size();
+            firstRows = merge(batches);
+            if (ExpenseMetrics.ENABLED) metrics.committed(store.size() - first, start);
+            // One step per producer, however many a commit takes along
+            for (int i = 0; i < batches.size(); i++) history.record(EditHistory.Step.added(firstRows[i], batches.get(i).size()));
+            fireAppended(first, store.size() - first);
+        } catch (RuntimeException | Error e) {
+            if (firstRows == null) {
+                IOException failure = new IOException("Could not add the expenses", e);
+                for (Commit commit : commits) commit.fail(failure);
+            }
+            throw e;
+        } finally {
+            if (firstRows != null) {
+                for (int i = 0; i < commits.size(); i++) commits.get(i).complete(firstRows[i]);
+            }
+        }
+    }
+
+    // Called with the commit lock held; returns the first row id of each batch
+    private int[] merge(List<ExpenseStore> batches) {
+        int[] firstRows = new int[batches.size()];
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                firstRows[i] = store.size();
+                store.addAll(batches.get(i));
+            }
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return firstRows;
+    }
+
+    private void publish() {
+        snapshot = store.snapshot();
+    }
+
+    public void update(int row, int epochDay, String category, long amountMinor, String description) throws IOException {
+        checkCategory(category);
+        commitLock.lock();
+        try {
+            checkWritable();
+            if (row < 0 || row >= store.size() || store.isDeleted(row)) throw new IndexOutOfBoundsException("No expense " + row);
+            EditHistory.Step step = EditHistory.Step.updated(row, snapshot, epochDay, category, amountMinor, description);
+            applyUpdate(row, step.values, 1);
+            history.record(step);
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    public void delete(int row) throws IOException {
+        IntList rows = new IntList(1);
+        rows.add(row);
+        delete(rows);
+    }
+
+    // Deletes the rows as one step; rows already deleted are skipped. Returns how many
+    // were deleted.
+    public int delete(IntList rows) throws IOException {
+        commitLock.lock();
+        try {
+            checkWritable();
+            IntList live = new IntList(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                int row = rows.get(i);
+                if (row < 0 || row >= store.size()) throw new IndexOutOfBoundsException("No expense " + row);
+                if (!store.isDeleted(row)) live.add(row);
+            }
+            if (live.isEmpty()) return 0;
+            applyDelete(live);
+            history.record(EditHistory.Step.deleted(live));
+            return live.size();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Reverts the latest add, update or delete; false when there is none
+    public boolean undo() throws IOException {
+        commitLock.lock();
+        try {
+            checkWritable();
+            EditHistory.Step step = history.nextUndo();
+            if (step == null) return false;
+            switch (step.kind) {
+                case ADD:
+                    applyDelete(step.rows);
+                    break;
+                case UPDATE:
+                    applyUpdate(step.rows.get(0), step.values, 0);
+                    break;
+                default:
+                    applyRestore(step.rows);
+            }
+            history.undone();
+            return true;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // Applies the latest undone step again; false when there is none
+    public boolean redo() throws IOException {
+        commitLock.lock();
+        try {
+            checkWritable();
+            EditHistory.Step step = history.nextRedo();
+            if (step == null) return false;
+            switch (step.kind) {
+                case ADD:
+                    applyRestore(step.rows);
+                    break;
+                case UPDATE:
+                    applyUpdate(step.rows.get(0), step.values, 1);
+                    break;
+                default:
+                    applyDelete(step.rows);
+            }
+            history.redone();
+            return true;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // What undo() and redo() would do, e.g. "Delete 3 expenses", or null for nothing
+    public String undoDescription() {
+        commitLock.lock();
+        try {
+            EditHistory.Step step = history.nextUndo();
+            return step == null ? null : step.describe();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    public String redoDescription() {
+        commitLock.lock();
+        try {
+            EditHistory.Step step = history.nextRedo();
+            return step == null ? null : step.describe();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    // The rest run with the commit lock held, journaling first like an add
+
+    private void applyUpdate(int row, ExpenseStore values, int from) throws IOException {
+        int epochDay = values.epochDay(from);
+        String category = values.category(from);
+        long amountMinor = values.amountMinor(from);
+        String description = values.description(from);
+        if (journal != null) journal.recordUpdate(row, epochDay, category, amountMinor, description);
+        lock.writeLock().lock();
+        try {
+            store.update(row, epochDay, category, amountMinor, description);
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChanged();
+    }
+
+    private void applyDelete(IntList rows) throws IOException {
+        if (journal != null) journal.recordDeletes(rows);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < rows.size(); i++) store.delete(rows.get(i));
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChanged();
+    }
+
+    private void applyRestore(IntList rows) throws IOException {
+        if (journal != null) journal.recordRestores(rows);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < rows.size(); i++) store.restore(rows.get(i));
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireChanged();
+    }
+
+    // In-memory ledgers only; a persisted ledger deletes rows instead. It cannot be
+    // undone and forgets the undo history. Rows still waiting in the stripes are
+    // committed after the clear.
+    public void clear() {
+        if (journal != null) throw new UnsupportedOperationException("A persisted ledger cannot be cleared");
+        commitLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                store.clear();
+                publish();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            history.clear();
+            fireChanged();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private static void checkCategory(String category) {
+        if (category.indexOf(',') >= 0) throw new IllegalArgumentException("Category cannot contain a comma");
+    }
+
+    private void checkWritable() {
+        if (writable) return;
+        if (journal == null) throw new IllegalStateException("Archived expenses are read-only");
+        if (archived) throw new IllegalStateException("Ledger has been archived; load it again to make changes");
+        throw new IllegalStateException("Ledger is read-only until it is fully loaded");
+    }
+
+    // Listeners run on the committing thread with the commit lock held, so they see
+    // changes in order; they may read the engine but must hand other work off
+    private void fireAppended(int firstRow, int count) {
+        if (count <= 0) return;
+        for (Listener listener : listeners) listener.expensesAppended(firstRow, count);
+    }
+
+    private void fireChanged() {
+        for (Listener listener : listeners) listener.expensesChanged();
+    }
+
+    // Folds the journal into the snapshot in the background
+    public Future<?> save() {
+        return journal == null ? CompletableFuture.completedFuture(null) : journal.compactInBackground();
+    }
+
+    // Moves every expense dated before the year into the archive and rewrites the ledger
+    // file without them, so later loads read only the rest. Returns how many moved. Row
+    // ids change, so this engine takes no more writes; load the ledger again to go on.
+    public int archiveBefore(int year) throws IOException {
+        if (journal == null) throw new UnsupportedOperationException("Only a persisted ledger can be archived");
+        commitLock.lock();
+        try {
+            checkWritable();
+            writable = false;
+            archived = true;
+            // Everything journaled is in the store; the journal files go with the old snapshot
+            journal.close();
+
+            LedgerArchive.Commit commit = new LedgerArchive.Commit(snapshotFile);
+            ExpenseStore recent = new ExpenseStore(1 << 16, false);
+            int moved;
+            lock.readLock().lock();
+            try {
+                moved = archive.stage(store, year, commit);
+                for (int row = 0; row < store.size(); row++) {
+                    if (store.isDeleted(row) || Dates.year(store.epochDay(row)) < year) continue;
+                    recent.add(store.epochDay(row), store.category(row), store.amountMinor(row), store.description(row));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            File staged = new File(snapshotFile.getPath() + ".staged");
+            if (BinaryLedger.isLedger(snapshotFile)) {
+                BinaryLedger.write(recent, staged);
+            } else {
+                writeCsv(recent, staged);
+            }
+            commit.move(staged, snapshotFile);
+            for (File file : journal.files()) commit.delete(file);
+            commit.run();
+            return moved;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private static void writeCsv(ExpenseStore rows, File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            for (int row = 0; row < rows.size(); row++) {
+                writer.write(rows.toCSV(row));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    // Deleted rows are left out, so the file's row ids may differ from the ledger's
+    public void writeLedger(File file) throws IOException {
+        lock.readLock().lock();
+        try {
+            BinaryLedger.write(store, file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writes the current snapshot's live rows; writers carry on meanwhile
+    public void exportCsv(File file) throws IOException {
+        ExpenseStore.Snapshot rows = snapshot;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int row = 0; row < rows.size(); row++) {
+                if (rows.isDeleted(row)) continue;
+                writer.write(rows.toCSV(row));
+                writer.write('\n');
+            }
+        }
+    }
+
+    // Rows, read lock-free from the latest snapshot
+
+    // Immutable view of every committed row; use one snapshot for reads that must agree
+    public ExpenseStore.Snapshot snapshot() {
+        return snapshot;
+    }
+
+    // Row ids run from 0 to size(), deleted rows included
+    public int size() {
+        return snapshot.size();
+    }
+
+    // Expenses not deleted
+    public int count() {
+        return snapshot.count();
+    }
+
+    public boolean isDeleted(int row) {
+        return snapshot.isDeleted(row);
+    }
+
+    public int epochDay(int row) {
+        return snapshot.epochDay(row);
+    }
+
+    public LocalDate date(int row) {
+        return snapshot.date(row);
+    }
+
+    public String category(int row) {
+        return snapshot.category(row);
+    }
+
+    public long amountMinor(int row) {
+        return snapshot.amountMinor(row);
+    }
+
+    public double amount(int row) {
+        return snapshot.amount(row);
+    }
+
+    public String description(int row) {
+        return snapshot.description(row);
+    }
+
+    public String toCSV(int row) {
+        return snapshot.toCSV(row);
+    }
+
+    // Ids of the snapshot's live rows in ascending key order. Each key's order is kept,
+    // extended as rows are appended and patched where rows changed, so only a clear or
+    // a long run of edits costs a full sort. The array is shared between callers and
+    // must not be modified.
+    public int[] sortedRows(ExpenseStore.Snapshot rows, SortedRows.Key key) {
+        long start = ExpenseMetrics.start();
+        try {
+            return sortedRowsOf(rows, key);
+        } finally {
+            timed(ExpenseMetrics.Operation.SORT, start);
+        }
+    }
+
+    private int[] sortedRowsOf(ExpenseStore.Snapshot rows, SortedRows.Key key) {
+        synchronized (sortedRows) {
+            Sorted cached = sortedRows.get(key);
+            IntList changed = cached == null || cached.modifications >= rows.modifications() ? null
+                    : rows.changedSince(cached.modifications);
+            if (changed != null) {
+                cached = new Sorted(rows, SortedRows.patch(rows, cached.rows, cached.size, changed, key));
+            } else if (cached == null || cached.modifications != rows.modifications()) {
+                cached = new Sorted(rows, SortedRows.sort(rows, rows.size(), key));
+            } else if (cached.size < rows.size()) {
+                cached = new Sorted(rows, SortedRows.extend(rows, cached.rows, cached.size, rows.size(), key));
+            } else if (cached.size > rows.size()) {
+                // An older snapshot than the cached one: its rows are a prefix by id
+                int[] older = new int[rows.count()];
+                int n = 0;
+                for (int row : cached.rows) {
+                    if (row < rows.size()) older[n++] = row;
+                }
+                return older;
+            }
+            sortedRows.put(key, cached);
+            return cached.rows;
+        }
+    }
+
+    // Aggregates, all O(1) except a day in an archived year, which pages the year in.
+    // Archived years count as well.
+
+    public long totalMinor() {
+        return snapshot.totalMinor() + (archive == null ? 0 : archive.totalMinor());
+    }
+
+    public long categoryTotal(String category) {
+        long start = ExpenseMetrics.start();
+        lock.readLock().lock();
+        try {
+            long archived = archive == null ? 0 : archive.categoryTotal(category);
+            return store.aggregates().categoryTotal(store.findCategory(category)) + archived;
+        } finally {
+            lock.readLock().unlock();
+            timed(ExpenseMetrics.Operation.TOTALS, start);
+        }
+    }
+
+    // monthKey as produced by Dates.monthKey
+    public long monthTotal(int monthKey) {
+        return periodTotal(Period.MONTH, monthKey);
+    }
+
+    public long categoryMonthTotal(String category, int monthKey) {
+        return categoryPeriodTotal(category, Period.MONTH, monthKey);
+    }
+
+    // key as produced by period.key
+    public long periodTotal(Period period, int key) {
+        long start = ExpenseMetrics.start();
+        try {
+            return periodTotalOf(period, key);
+        } finally {
+            timed(ExpenseMetrics.Operation.TOTALS, start);
+        }
+    }
+
+    private long periodTotalOf(Period period, int key) {
+        long total;
+        lock.readLock().lock();
+        try {
+            total = store.aggregates().periodTotal(period, key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            return archive == null ? total : total + archive.periodTotal(period, key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long categoryPeriodTotal(String category, Period period, int key) {
+        long start = ExpenseMetrics.start();
+        long total;
+        lock.readLock().lock();
+        try {
+            total = store.aggregates().categoryPeriodTotal(store.findCategory(category), period, key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            return archive == null ? total : total + archive.categoryPeriodTotal(category, period, key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            timed(ExpenseMetrics.Operation.TOTALS, start);
+        }
+    }
+
+    // Adds every category's total for the period to totals, by name
+    void addCategoryTotals(Period period, int key, Map<String, Long> totals) throws IOException {
+        lock.readLock().lock();
+        try {
+            ExpenseAggregates aggregates = store.aggregates();
+            for (int id = 0; id < store.categoryCount(); id++) {
+                long categoryTotal = aggregates.categoryPeriodTotal(id, period, key);
+                if (categoryTotal != 0) totals.merge(store.categoryName(id), categoryTotal, Long::sum);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (archive != null) archive.addCategoryTotals(period, key, totals);
+    }
+
+    // Total, change from the period before, daily average and the largest categories,
+    // all read from the rolled-up totals
+    public PeriodReport report(Period period, int key, int topCategories) {
+        int firstDay = period.firstDay(key);
+        int days = period.lengthInDays(key);
+        int today = (int) LocalDate.now().toEpochDay();
+        if (today >= firstDay && today < firstDay + days) days = today - firstDay + 1;
+
+        long start = ExpenseMetrics.start();
+        try {
+            long total = periodTotalOf(period, key);
+            Map<String, Long> totals = new LinkedHashMap<>();
+            addCategoryTotals(period, key, totals);
+            List<PeriodReport.CategoryTotal> categories = new ArrayList<>();
+            for (Map.Entry<String, Long> category : totals.entrySet()) {
+                double share = total == 0 ? 0 : category.getValue() * 100.0 / total;
+                categories.add(new PeriodReport.CategoryTotal(category.getKey(), category.getValue(), share));
+            }
+            categories.sort(Comparator.comparingLong(PeriodReport.CategoryTotal::totalMinor).reversed());
+            List<PeriodReport.CategoryTotal> top = new ArrayList<>(categories.subList(0, Math.min(topCategories, categories.size())));
+            return new PeriodReport(period, key, total, periodTotalOf(period, key - 1), days, top);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            timed(ExpenseMetrics.Operation.REPORT, start);
+        }
+    }
+
+    public long sumMinor(IntList rows) {
+        long start = ExpenseMetrics.start();
+        ExpenseStore.Snapshot current = snapshot;
+        long sum = 0;
+        for (int i = 0; i < rows.size(); i++) sum += current.amountMinor(rows.get(i));
+        timed(ExpenseMetrics.Operation.TOTALS, start);
+        return sum;
+    }
+
+    // The ledger's categories, then any only archived years have
+    public List<String> categories() {
+        Set<String> names = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int id = 0; id < store.categoryCount(); id++) names.add(store.categoryName(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (archive != null) names.addAll(archive.categories());
+        return new ArrayList<>(names);
+    }
+
+    // Years spanned by the ledger and its archive, only meaningful when not empty
+
+    public boolean isEmpty() {
+        return count() == 0 && (archive == null || archive.isEmpty());
+    }
+
+    public int firstYear() {
+        lock.readLock().lock();
+        try {
+            if (archive == null || archive.isEmpty()) return store.dateIndex().firstYear();
+            return store.dateIndex().isEmpty() ? archive.firstYear() : Math.min(archive.firstYear(), store.dateIndex().firstYear());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int lastYear() {
+        lock.readLock().lock();
+        try {
+            if (archive == null || archive.isEmpty()) return store.dateIndex().lastYear();
+            return store.dateIndex().isEmpty() ? archive.lastYear() : Math.max(archive.lastYear(), store.dateIndex().lastYear());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Queries
+
+    // Ids of the categories whose name contains the query, ignoring case
+    public IntList matchingCategories(String query) {
+        lock.readLock().lock();
+        try {
+            return store.categoryIndex().matchingCategories(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public IntList rowsInCategories(IntList categoryIds) {
+        long start = ExpenseMetrics.start();
+        lock.readLock().lock();
+        try {
+            return store.categoryIndex().rows(categoryIds);
+        } finally {
+            lock.readLock().unlock();
+            timed(ExpenseMetrics.Operation.SEARCH, start);
+        }
+    }
+
+    public long categoriesTotal(IntList categoryIds) {
+        long start = ExpenseMetrics.start();
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (int i = 0; i < categoryIds.size(); i++) total += store.aggregates().categoryTotal(categoryIds.get(i));
+            return total;
+        } finally {
+            lock.readLock().unlock();
+            timed(ExpenseMetrics.Operation.TOTALS, start);
+        }
+    }
+
+    // Rows whose category contains the query, or whose yyyy-MM-dd date does
+    public IntList search(String query) {
+        long start = ExpenseMetrics.start();
+        lock.readLock().lock();
+        try {
+            IntList rows = store.categoryIndex().search(query);
+            return couldMatchDate(query) ? IntList.union(rows, rowsWithDateContaining(query)) : rows;
+        } finally {
+            lock.readLock().unlock();
+            timed(ExpenseMetrics.Operation.SEARCH, start);
+        }
+    }
+
+    // Dates are matched in their yyyy-MM-dd form, which only has digits and dashes
+    static boolean couldMatchDate(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if ((c < '0' || c > '9') && c != '-') return false;
+        }
+        return true;
+    }
+
+    // Each distinct day is formatted once, not once per row
+    private IntList rowsWithDateContaining(String query) {
+        IntList rows = new IntList();
+        DateIndex dates = store.dateIndex();
+        if (dates.isEmpty()) return rows;
+
+        int minDay = dates.minDay(), maxDay = dates.maxDay();
+
+        byte[] dayMatches = new byte[maxDay - minDay + 1];  // 0 unknown, 1 match, 2 no match
+        for (int row = 0; row < store.size(); row++) {
+            if (store.isDeleted(row)) continue;
+            int day = store.epochDay(row);
+            byte match = dayMatches[day - minDay];
+            if (match == 0) {
+                match = Dates.formatIso(day).contains(query) ? (byte) 1 : (byte) 2;
+                dayMatches[day - minDay] = match;
+            }
+            if (match == 1) rows.add(row);
+        }
+        return rows;
+    }
+
+    // Each criterion resolves through the category or date index, and the results are
+    // intersected instead of scanning every row
+    public IntList filter(ExpenseFilter filter) {
+        long start = ExpenseMetrics.start();
+        lock.readLock().lock();
+        try {
+            IntList rows = null;
+            DateIndex dates = store.dateIndex();
+
+            if (filter.category != null) {
+                rows = narrow(rows, store.categoryIndex().rows(store.findCategory(filter.category)));
+            }
+            if (filter.year != 0) {
+                rows = narrow(rows, filter.month == 0 ? dates.rowsInYear(filter.year)
+                        : dates.rowsInMonth(filter.year * 12 + filter.month - 1));
+            } else if (filter.month != 0) {
+                rows = narrow(rows, dates.rowsInMonthOfAnyYear(filter.month));
+            }
+            if (filter.fromDay != Integer.MIN_VALUE || filter.toDay != Integer.MAX_VALUE) {
+                rows = narrow(rows, dates.rowsBetween(filter.fromDay, filter.toDay, store));
+            }
+
+            if (rows == null) {
+                rows = new IntList(store.count());
+                for (int row = 0; row < store.size(); row++) {
+                    if (!store.isDeleted(row)) rows.add(row);
+                }
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+            timed(ExpenseMetrics.Operation.FILTER, start);
+        }
+    }
+
+    // Archived expenses the filter matches, copied in year order into a store of their
+    // own, since they have no row ids in this ledger; null when none match. Years are
+    // paged in as needed. filter and search cover the ledger alone, so callers showing
+    // every match ask for both.
+    ExpenseStore archivedMatches(ExpenseFilter filter) throws IOException {
+        if (archive == null) return null;
+        ExpenseStore matches = null;
+        for (int year : archive.years(filter)) {
+            ExpenseEngine archived = archive.year(year);
+            matches = copy(archived, archived.filter(filter), matches);
+        }
+        return matches;
+    }
+
+    // As search, or with categoriesOnly those whose category contains the query
+    ExpenseStore archivedMatches(String query, boolean categoriesOnly) throws IOException {
+        if (archive == null) return null;
+        ExpenseStore matches = null;
+        for (int year : archive.years()) {
+            ExpenseEngine archived = archive.year(year);
+            IntList rows = categoriesOnly ? archived.rowsInCategories(archived.matchingCategories(query)) : archived.search(query);
+            matches = copy(archived, rows, matches);
+        }
+        return matches;
+    }
+
+    // Indexed, so a search can be narrowed further by category id
+    private static ExpenseStore copy(ExpenseEngine from, IntList rows, ExpenseStore to) {
+        if (rows.isEmpty()) return to;
+        if (to == null) to = new ExpenseStore(rows.size(), true);
+        ExpenseStore.Snapshot snapshot = from.snapshot();
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            to.add(snapshot.epochDay(row), snapshot.category(row), snapshot.amountMinor(row), snapshot.description(row));
+        }
+        return to;
+    }
+
+    // Index-owned lists are copied, the caller keeps the result
+    private static IntList narrow(IntList rows, IntList filter) {
+        return rows == null ? new IntList(filter) : IntList.intersect(rows, filter);
+    }
+
+    // Compiles to nothing when metrics are off
+    private void timed(ExpenseMetrics.Operation operation, long start) {
+        if (ExpenseMetrics.ENABLED) metrics.record(operation, start);
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Sorted {
+        final int modifications;
+        final int size;
+        final int[] rows;
+
+        Sorted(ExpenseStore.Snapshot snapshot, int[] rows) {
+            this.modifications = snapshot.modifications();
+            this.size = snapshot.size();
+            this.rows = rows;
+        }
+    }
+
+    private static final class Stripe {
+        ExpenseStore pending = new ExpenseStore(STRIPE_CAPACITY, false);
+        Commit commit = new Commit();
+    }
+
+    // Outcome of one batch: its first row id, or the journal failure. Written by the
+    // committer before the volatile done flag, read by the waiting producers after it.
+    private static final class Commit {
+        private volatile boolean done;
+        private int firstRow;
+        private IOException failure;
+
+        boolean isDone() {
+            return done;
+        }
+
+        void complete(int firstRow) {
+            this.firstRow = firstRow;
+            done = true;
+        }
+
+        void fail(IOException failure) {
+            this.failure = failure;
+            done = true;
+        }
+
+        int firstRow() throws IOException {
+            if (failure != null) throw new IOException("Expense could not be saved", failure);
+            return firstRow;
+        }
+    }
+}
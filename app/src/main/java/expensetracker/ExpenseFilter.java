@@ -0,0 +1,73 @@
+package expensetracker;
+
+import java.util.List;
+
+// Criteria for ExpenseEngine.filter. Criteria left unset match every expense; the
+// ones that are set must all match.
+public class ExpenseFilter {
+    String category;
+    int year;   // 0 for any year
+    int month;  // 1-12, 0 for any month
+    int fromDay = Integer.MIN_VALUE;
+    int toDay = Integer.MAX_VALUE;
+
+    // Exact category name; null for any
+    public ExpenseFilter category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    public ExpenseFilter year(int year) {
+        this.year = year;
+        return this;
+    }
+
+    // With a year, one calendar month; without, that month of every year
+    public ExpenseFilter month(int month) {
+        if (month < 0 || month > 12) throw new IllegalArgumentException("Month must be 1-12");
+        this.month = month;
+        return this;
+    }
+
+    // Inclusive epoch days; either end may be Integer.MIN_VALUE or MAX_VALUE for open
+    public ExpenseFilter between(int fromDay, int toDay) {
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        return this;
+    }
+
+    // From "key=value" criteria as ExpenseCli and ExpenseServer take them: category,
+    // year, month (1-12), and from and to (yyyy-MM-dd, inclusive)
+    static ExpenseFilter parse(List<String> criteria) {
+        ExpenseFilter filter = new ExpenseFilter();
+        int fromDay = Integer.MIN_VALUE, toDay = Integer.MAX_VALUE;
+        for (String criterion : criteria) {
+            int eq = criterion.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value: " + criterion);
+            String key = criterion.substring(0, eq), value = criterion.substring(eq + 1);
+            switch (key) {
+                case "category": filter.category(value); break;
+                case "year": filter.year(Integer.parseInt(value)); break;
+                case "month": filter.month(Integer.parseInt(value)); break;
+                case "from": fromDay = Dates.requireIso(value); break;
+                case "to": toDay = Dates.requireIso(value); break;
+                default: throw new IllegalArgumentException("Unknown filter: " + key);
+            }
+        }
+        return filter.between(fromDay, toDay);
+    }
+
+    // The same test for one expense, e.g. one appended while a filtered view is shown
+    boolean matches(ExpenseStore.Snapshot rows, int row) {
+        if (category != null && !category.equals(rows.category(row))) return false;
+        int day = rows.epochDay(row);
+        if (year != 0 && Dates.year(day) != year) return false;
+        if (month != 0 && Dates.month(day) != month) return false;
+        return day >= fromDay && day <= toDay;
+    }
+
+    public boolean isEmpty() {
+        return category == null && year == 0 && month == 0
+                && fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE;
+    }
+}
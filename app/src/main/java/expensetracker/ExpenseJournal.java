@@ -0,0 +1,479 @@
+package expensetracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+// Append-only journal next to a CSV or binary ledger snapshot. Every add, update, delete or
+// restore is written and forced to disk as one checksummed line, so saving an expense costs
+// one record instead of a rewrite of the ledger. Compaction folds the journal into a new
+// snapshot on a background thread, working only from the files on disk.
+//
+// Records are "<crc32> A|U,<row>,<yyyy-MM-dd>,<category>,<amount in minor units>,<description>"
+// and "<crc32> D|R,<row>". Adds carry the row id they create, which makes replay idempotent:
+// a crash between replacing the snapshot and deleting the compacted journal only re-applies
+// records the snapshot already holds.
+//
+// Deleted rows stay in the snapshot, so row ids never shift; compaction lists them in a
+// "<snapshot>.deleted" file of row ids instead, one per line, and loading drops them again.
+class ExpenseJournal {
+    private static final int COMPACT_AFTER_RECORDS = 10_000;
+
+    private final File snapshot;
+    private final File journal;
+    private final File compacting;
+    private final File deletedRows;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileChannel channel;
+    private int records;
+    private Future<?> pendingCompaction = CompletableFuture.completedFuture(null);
+    private volatile ExpenseMetrics metrics;
+
+    public ExpenseJournal(File snapshot) {
+        this.snapshot = snapshot;
+        this.journal = new File(snapshot.getPath() + ".journal");
+        this.compacting = new File(snapshot.getPath() + ".journal.compacting");
+        this.deletedRows = new File(snapshot.getPath() + ".deleted");
+    }
+
+    // Compactions are timed as saves when set
+    void setMetrics(ExpenseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Applies journaled changes on top of the rows loaded from the snapshot and opens
+    // the journal for appending. Returns the number of records applied.
+    public synchronized int replay(ExpenseStore store) throws IOException {
+        int applied = apply(store, true);
+        channel = openForAppend();
+        if (compacting.exists()) pendingCompaction = compactor.submit(this::compactFiles);
+        return applied;
+    }
+
+    // As replay, but leaves the files alone: a torn last record is skipped rather than
+    // cut off, and nothing is opened for appending or compacted
+    public synchronized int read(ExpenseStore store) throws IOException {
+        return apply(store, false);
+    }
+
+    private int apply(ExpenseStore store, boolean live) throws IOException {
+        BitSet deleted = readDeletedRows();
+        int applied = 0;
+        if (compacting.exists()) applied += replay(compacting, store, deleted, false);
+        applied += replay(journal, store, deleted, live);
+
+        // Deleted last, once every row they may refer to is there
+        for (int row = deleted.nextSetBit(0); row >= 0 && row < store.size(); row = deleted.nextSetBit(row + 1)) {
+            store.delete(row);
+        }
+        return applied;
+    }
+
+    private int replay(File file, ExpenseStore store, BitSet deleted, boolean live) throws IOException {
+        if (!file.exists()) return 0;
+        List<Record> read = readRecords(file, live);
+        int applied = apply(read, store) + applyDeletions(read, deleted);
+        if (live) records = applied;
+        return applied;
+    }
+
+    // Adds and updates only; deletes and restores go through applyDeletions
+    private static int apply(List<Record> records, ExpenseStore store) {
+        int applied = 0;
+        for (Record record : records) {
+            if (record.kind == DELETE || record.kind == RESTORE) {
+                continue;
+            } else if (record.kind == UPDATE) {
+                if (record.row >= store.size()) break;
+                store.update(record.row, record.epochDay, record.category, record.amountMinor, record.description);
+            } else if (record.row == store.size()) {
+                store.add(record.epochDay, record.category, record.amountMinor, record.description);
+            } else if (record.row > store.size()) {
+                break;  // a gap means earlier rows are missing, stop rather than misnumber
+            } else {
+                continue;  // already part of the snapshot
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    private static int applyDeletions(List<Record> records, BitSet deleted) {
+        int applied = 0;
+        for (Record record : records) {
+            if (record.kind == DELETE) {
+                deleted.set(record.row);
+            } else if (record.kind == RESTORE) {
+                deleted.clear(record.row);
+            } else {
+                continue;
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    private BitSet readDeletedRows() throws IOException {
+        BitSet deleted = new BitSet();
+        if (!deletedRows.exists()) return deleted;
+        for (String line : Files.readAllLines(deletedRows.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) deleted.set(Integer.parseInt(line));
+        }
+        return deleted;
+    }
+
+    private void writeDeletedRows(BitSet deleted) throws IOException {
+        if (deleted.isEmpty() && !deletedRows.exists()) return;
+        File tmp = new File(deletedRows.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII))) {
+            for (int row = deleted.nextSetBit(0); row >= 0; row = deleted.nextSetBit(row + 1)) {
+                writer.write(Integer.toString(row));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), deletedRows.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Reads records up to the first torn or corrupt line. For the live journal the
+    // damaged tail is cut off so new records do not follow garbage.
+    private static List<Record> readRecords(File file, boolean truncateTail) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        List<Record> result = new ArrayList<>();
+
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+            Record record = Record.parse(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8));
+            if (record == null) break;
+            result.add(record);
+            lineStart = i + 1;
+        }
+
+        if (truncateTail && lineStart < bytes.length) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(lineStart);
+            }
+        }
+        return result;
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        return FileChannel.open(journal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    public void recordAdd(int row, int epochDay, String category, long amountMinor, String description) throws IOException {
+        append(Collections.singletonList(new Record(ADD, row, epochDay, category, amountMinor, description)));
+    }
+
+    public void recordUpdate(int row, int epochDay, String category, long amountMinor, String description) throws IOException {
+        append(Collections.singletonList(new Record(UPDATE, row, epochDay, category, amountMinor, description)));
+    }
+
+    // Every row of the list in one write and one fsync
+    public void recordDeletes(IntList rows) throws IOException {
+        append(rowRecords(DELETE, rows));
+    }
+
+    public void recordRestores(IntList rows) throws IOException {
+        append(rowRecords(RESTORE, rows));
+    }
+
+    private static List<Record> rowRecords(char kind, IntList rows) {
+        List<Record> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) result.add(new Record(kind, rows.get(i)));
+        return result;
+    }
+
+    // Journals every row of a batch as adds numbered from firstRow, forced to disk once
+    public void recordAdds(ExpenseStore batch, int firstRow) throws IOException {
+        List<Record> added = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) added.add(new Record(ADD, firstRow + i, batch, i));
+        append(added);
+    }
+
+    // Batches in order, rows numbered on from firstRow; still one write and one fsync
+    public void recordAdds(List<ExpenseStore> batches, int firstRow) throws IOException {
+        List<Record> added = new ArrayList<>();
+        int row = firstRow;
+        for (ExpenseStore batch : batches) {
+            for (int i = 0; i < batch.size(); i++) added.add(new Record(ADD, row++, batch, i));
+        }
+        append(added);
+    }
+
+    private synchronized void append(List<Record> added) throws IOException {
+        if (channel == null) throw new IOException("Journal is not open");
+
+        StringBuilder lines = new StringBuilder();
+        for (Record record : added) lines.append(record.toLine());
+        ByteBuffer buf = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) channel.write(buf);
+        channel.force(false);
+
+        records += added.size();
+        if (records >= COMPACT_AFTER_RECORDS) compactInBackground();
+    }
+
+    // Waits for a compaction under way, then stops appending. A failed compaction
+    // leaves its records in the compacting file, which the caller still has.
+    public synchronized void close() throws IOException {
+        try {
+            pendingCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the journal to compact");
+        } catch (ExecutionException e) {
+            // Its records are still on disk and in the ledger
+        }
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    // Every file the journal keeps next to the snapshot
+    public List<File> files() {
+        return Arrays.asList(journal, compacting, deletedRows);
+    }
+
+    // Moves the current journal aside and folds it into the snapshot on the compactor
+    // thread. New records go to a fresh journal meanwhile.
+    public synchronized Future<?> compactInBackground() {
+        if (channel == null || !pendingCompaction.isDone()) return pendingCompaction;
+
+        // An earlier compaction that failed has to finish before the journal can move aside again
+        if (!compacting.exists()) {
+            if (records == 0) return pendingCompaction;
+            try {
+                channel.close();
+                Files.move(journal.toPath(), compacting.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                records = 0;
+            } catch (IOException e) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            } finally {
+                try {
+                    channel = openForAppend();
+                } catch (IOException e) {
+                    channel = null;
+                }
+            }
+        }
+
+        pendingCompaction = compactor.submit(this::compactFiles);
+        return pendingCompaction;
+    }
+
+    // The deleted rows file is replaced before the snapshot: should the snapshot not
+    // follow, replaying the compacted journal again over the new list changes nothing
+    private Void compactFiles() throws IOException {
+        long start = ExpenseMetrics.start();
+        List<Record> compacted = readRecords(compacting, false);
+        BitSet deleted = readDeletedRows();
+        applyDeletions(compacted, deleted);
+        writeDeletedRows(deleted);
+        if (isBinary()) {
+            compactBinary(compacted);
+        } else {
+            compactCsv(compacted);
+        }
+        Files.delete(compacting.toPath());
+        if (ExpenseMetrics.ENABLED && metrics != null) metrics.record(ExpenseMetrics.Operation.SAVE, start);
+        return null;
+    }
+
+    private boolean isBinary() {
+        return snapshot.getName().endsWith(BinaryLedger.EXTENSION);
+    }
+
+    // The binary snapshot loads straight from its mapping, the records are applied in
+    // memory and BinaryLedger.write swaps the new file in atomically
+    private void compactBinary(List<Record> compacted) throws IOException {
+        ExpenseStore store = new ExpenseStore(1 << 16, false);
+        if (snapshot.exists()) {
+            BinaryLedger ledger = BinaryLedger.open(snapshot);
+            ledger.readInto(store, 0, ledger.rowCount());
+        }
+        apply(compacted, store);
+        BinaryLedger.write(store, snapshot);
+    }
+
+    // Streams the old snapshot into a temporary file, substituting updated rows and
+    // appending added ones, then swaps it in atomically
+    private void compactCsv(List<Record> compacted) throws IOException {
+        Map<Integer, Record> latest = new HashMap<>();
+        List<Integer> added = new ArrayList<>();
+        for (Record record : compacted) {
+            if (record.kind == DELETE || record.kind == RESTORE) continue;
+            if (record.kind == ADD && !latest.containsKey(record.row)) added.add(record.row);
+            latest.put(record.row, record);
+        }
+
+        File tmp = new File(snapshot.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            int[] rows = {0};
+            if (snapshot.exists()) {
+                ExpenseCsvReader.read(snapshot, 10_000, (batch, bytesRead) -> {
+                    for (int i = 0; i < batch.size(); i++, rows[0]++) {
+                        Record record = latest.get(rows[0]);
+                        writer.write(record != null ? record.toCSV() : batch.toCSV(i));
+                        writer.write('\n');
+                    }
+                    return true;
+                });
+            }
+            for (int row : added) {
+                if (row < rows[0]) continue;
+                if (row > rows[0]) break;
+                writer.write(latest.get(row).toCSV());
+                writer.write('\n');
+                rows[0]++;
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+
+        Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static final char ADD = 'A';
+    private static final char UPDATE = 'U';
+    private static final char DELETE = 'D';
+    private static final char RESTORE = 'R';
+
+    private static class Record {
+        final char kind;
+        final int row;
+        final int epochDay;
+        final String category;
+        final long amountMinor;
+        final String description;
+
+        Record(char kind, int row, int epochDay, String category, long amountMinor, String description) {
+            this.kind = kind;
+            this.row = row;
+            this.epochDay = epochDay;
+            this.category = category;
+            this.amountMinor = amountMinor;
+            this.description = description;
+        }
+
+        // A delete or restore names only the row
+        Record(char kind, int row) {
+            this(kind, row, 0, null, 0, null);
+        }
+
+        Record(char kind, int row, ExpenseStore store, int storeRow) {
+            this(kind, row, store.epochDay(storeRow), store.category(storeRow), store.amountMinor(storeRow),
+                    store.description(storeRow));
+        }
+
+        String toCSV() {
+            return ExpenseStore.toCSV(epochDay, category, amountMinor, description);
+        }
+
+        String toLine() {
+            String body = kind == DELETE || kind == RESTORE ? kind + "," + row
+                    : kind + "," + row + "," + Dates.formatIso(epochDay) + ","
+                    + escape(category) + "," + amountMinor + "," + escape(description);
+            return checksum(body) + " " + body + "\n";
+        }
+
+        // Returns null for a line that is torn or fails its checksum
+        static Record parse(String line) {
+            int space = line.indexOf(' ');
+            if (space < 0) return null;
+            String body = line.substring(space + 1);
+            if (!line.substring(0, space).equals(checksum(body))) return null;
+
+            List<String> fields = split(body);
+            if (fields.get(0).length() != 1) return null;
+            char kind = fields.get(0).charAt(0);
+            try {
+                if (kind == DELETE || kind == RESTORE) {
+                    int row = fields.size() == 2 ? Integer.parseInt(fields.get(1)) : -1;
+                    return row >= 0 ? new Record(kind, row) : null;
+                }
+                if ((kind != ADD && kind != UPDATE) || fields.size() != 6) return null;
+                int epochDay = Dates.parseIso(fields.get(2));
+                if (epochDay == Dates.NO_DATE) return null;
+                return new Record(kind, Integer.parseInt(fields.get(1)), epochDay,
+                        fields.get(3), Long.parseLong(fields.get(4)), fields.get(5));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static String checksum(String body) {
+            CRC32 crc = new CRC32();
+            crc.update(body.getBytes(StandardCharsets.UTF_8));
+            return Long.toHexString(crc.getValue());
+        }
+
+        private static String escape(String s) {
+            StringBuilder sb = new StringBuilder(s.length() + 8);
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case ',': sb.append("\\,"); break;
+                    default: sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private static List<String> split(String body) {
+            List<String> fields = new ArrayList<>(6);
+            StringBuilder field = new StringBuilder();
+            for (int i = 0; i < body.length(); i++) {
+                char c = body.charAt(i);
+                if (c == '\\' && i + 1 < body.length()) {
+                    char next = body.charAt(++i);
+                    field.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
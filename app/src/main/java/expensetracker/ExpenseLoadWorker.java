@@ -0,0 +1,31 @@
+package expensetracker;
+
+import javax.swing.*;
+import java.io.IOException;
+
+// Runs ExpenseEngine.load off the EDT. Rows reach the table through the engine's
+// listeners as they are read; progress (0-100) is reported through the standard
+// SwingWorker "progress" property, and cancelling stops the load between batches.
+class ExpenseLoadWorker extends SwingWorker<ParallelCsvImporter.Report, Void> {
+    private final ExpenseEngine engine;
+    private volatile int loaded;
+
+    public ExpenseLoadWorker(ExpenseEngine engine) {
+        this.engine = engine;
+    }
+
+    public int getLoadedCount() {
+        return loaded;
+    }
+
+    // Returns the malformed lines that were skipped, with their line numbers
+    @Override
+    protected ParallelCsvImporter.Report doInBackground() throws IOException {
+        return engine.load((rows, percent) -> {
+            loaded = rows;
+            if (isCancelled()) return false;
+            setProgress(percent);
+            return true;
+        });
+    }
+}
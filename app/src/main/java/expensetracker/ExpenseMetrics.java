@@ -0,0 +1,352 @@
+package expensetracker;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Timings and sizes of one engine's hot paths, to see which operations slow down on
+// which ledger sizes. Off unless the JVM runs with -Dexpensetracker.metrics=true.
+// ENABLED is a constant, so with metrics off the engine's timing calls compile away
+// and nothing here is created.
+//
+// When on, a started engine is an MXBean named expensetracker:type=Ledger,name=<ledger>,
+// and prints one line to stderr every expensetracker.metrics.logSeconds (60 by default,
+// 0 for none) with the latencies of that interval next to the ledger's size.
+public final class ExpenseMetrics implements ExpenseMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("expensetracker.metrics");
+
+    private static final long LOG_SECONDS = Long.getLong("expensetracker.metrics.logSeconds", 60);
+    // An event handler running this long is a freeze the user notices
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    enum Operation {
+        // One group commit: journal write and fsync, then the merge into the ledger
+        COMMIT,
+        // Folding the journal into the snapshot file
+        SAVE,
+        FILTER,
+        SEARCH,
+        TOTALS,
+        REPORT,
+        SORT
+    }
+
+    private static final LatencyHistogram EDT_EVENTS = new LatencyHistogram();
+    private static final LongAdder EDT_STALLS = new LongAdder();
+    private static final LongAdder EDT_BLOCKED_NANOS = new LongAdder();
+    private static final AtomicBoolean EDT_WATCHED = new AtomicBoolean();
+    private static final ScheduledExecutorService LOGGER = ENABLED ? Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "expense-metrics");
+        t.setDaemon(true);
+        return t;
+    }) : null;
+
+    private final ExpenseEngine engine;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder committedRows = new LongAdder();
+    private volatile int resets;
+    private volatile long loadNanos;
+    private volatile int loadRows;
+
+    ExpenseMetrics(ExpenseEngine engine) {
+        this.engine = engine;
+        for (int i = 0; i < latencies.length; i++) latencies[i] = new LatencyHistogram();
+    }
+
+    // Start of a timed operation, 0 when metrics are off
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    void record(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    void committed(int rows, long startNanos) {
+        committedRows.add(rows);
+        record(Operation.COMMIT, startNanos);
+    }
+
+    // A complete load: the snapshot file read and the journal replayed
+    void loaded(int rows, long startNanos) {
+        loadNanos = System.nanoTime() - startNanos;
+        loadRows = rows;
+    }
+
+    // Registers the engine's metrics with JMX and starts its log line; does nothing
+    // when metrics are off. name tells ledgers apart, e.g. the ledger file's name.
+    public static void start(ExpenseEngine engine, String name) {
+        if (!ENABLED) return;
+        ExpenseMetrics metrics = engine.metrics();
+        try {
+            ObjectName objectName = new ObjectName("expensetracker:type=Ledger,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            System.err.println("Metrics for " + name + " are not available over JMX: " + e.getMessage());
+        }
+        if (LOG_SECONDS > 0) {
+            Interval interval = metrics.new Interval(name);
+            LOGGER.scheduleAtFixedRate(() -> System.err.println(interval.next()), LOG_SECONDS, LOG_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Times every event the Swing event thread handles; call before showing a frame
+    public static void watchEventDispatch() {
+        if (!ENABLED || !EDT_WATCHED.compareAndSet(false, true)) return;
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+            private long dispatches;
+
+            @Override
+            protected void dispatchEvent(AWTEvent event) {
+                long dispatch = ++dispatches;
+                long start = System.nanoTime();
+                try {
+                    super.dispatchEvent(event);
+                } finally {
+                    // A modal dialog runs a nested event loop inside the event that opened
+                    // it; waiting on the user is no freeze, the nested events count instead
+                    if (dispatch == dispatches) edtEvent(System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    private static void edtEvent(long nanos) {
+        EDT_EVENTS.record(nanos);
+        if (nanos >= STALL_NANOS) {
+            EDT_STALLS.increment();
+            EDT_BLOCKED_NANOS.add(nanos);
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return engine.count();
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public long getHeapBytesPerRow() {
+        return getHeapUsedBytes() / Math.max(1, getRows());
+    }
+
+    @Override
+    public double getLoadSeconds() {
+        return loadNanos / 1e9;
+    }
+
+    @Override
+    public long getLoadRowsPerSecond() {
+        return loadNanos == 0 ? 0 : (long) (loadRows * 1e9 / loadNanos);
+    }
+
+    @Override
+    public long getCommittedRows() {
+        return committedRows.sum();
+    }
+
+    @Override
+    public Latency getCommitLatency() {
+        return latency(Operation.COMMIT);
+    }
+
+    @Override
+    public Latency getSaveLatency() {
+        return latency(Operation.SAVE);
+    }
+
+    @Override
+    public Latency getFilterLatency() {
+        return latency(Operation.FILTER);
+    }
+
+    @Override
+    public Latency getSearchLatency() {
+        return latency(Operation.SEARCH);
+    }
+
+    @Override
+    public Latency getTotalsLatency() {
+        return latency(Operation.TOTALS);
+    }
+
+    @Override
+    public Latency getReportLatency() {
+        return latency(Operation.REPORT);
+    }
+
+    @Override
+    public Latency getSortLatency() {
+        return latency(Operation.SORT);
+    }
+
+    @Override
+    public Latency getEdtEventLatency() {
+        return new Latency(EDT_EVENTS.counts(), EDT_EVENTS.totalNanos(), EDT_EVENTS.maxNanos());
+    }
+
+    @Override
+    public long getEdtStalls() {
+        return EDT_STALLS.sum();
+    }
+
+    @Override
+    public double getEdtBlockedSeconds() {
+        return EDT_BLOCKED_NANOS.sum() / 1e9;
+    }
+
+    private Latency latency(Operation operation) {
+        LatencyHistogram histogram = latencies[operation.ordinal()];
+        return new Latency(histogram.counts(), histogram.totalNanos(), histogram.maxNanos());
+    }
+
+    // Everything since the start, in the log line's format
+    @Override
+    public String getSummary() {
+        StringBuilder line = sizes(new StringBuilder("metrics"));
+        for (Operation operation : Operation.values()) {
+            appendLatency(line, operation.name().toLowerCase(Locale.ROOT), latency(operation));
+        }
+        return appendEdt(line, getEdtEventLatency(), getEdtStalls(), EDT_BLOCKED_NANOS.sum()).toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : latencies) histogram.reset();
+        committedRows.reset();
+        resets++;
+    }
+
+    private StringBuilder sizes(StringBuilder line) {
+        line.append(" rows=").append(getRows())
+                .append(" heap/row=").append(getHeapBytesPerRow()).append('B');
+        if (loadNanos > 0) {
+            line.append(String.format(Locale.ROOT, " load=%.2fs(%d rows/s)", getLoadSeconds(), getLoadRowsPerSecond()));
+        }
+        return line;
+    }
+
+    // Operations that did not run are left out
+    private static void appendLatency(StringBuilder line, String name, Latency latency) {
+        if (latency.count == 0) return;
+        line.append(String.format(Locale.ROOT, " | %s n=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                name, latency.count, latency.getP50Millis(), latency.getP99Millis(), latency.getMaxMillis()));
+    }
+
+    private static StringBuilder appendEdt(StringBuilder line, Latency events, long stalls, long blockedNanos) {
+        if (!EDT_WATCHED.get()) return line;
+        appendLatency(line, "edt", events);
+        return line.append(String.format(Locale.ROOT, " stalls=%d blocked=%.2fs", stalls, blockedNanos / 1e9));
+    }
+
+    // Count, mean and percentiles of one operation's durations. Percentiles are the
+    // upper bounds of histogram buckets, high by up to 25% but never above the max.
+    public static final class Latency {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        Latency(long[] counts, long totalNanos, long maxNanos) {
+            count = LatencyHistogram.count(counts);
+            meanMillis = count == 0 ? 0 : totalNanos / 1e6 / count;
+            // A bucket's upper bound can lie past the largest value recorded in it
+            p50Millis = Math.min(maxNanos, LatencyHistogram.percentileNanos(counts, 50)) / 1e6;
+            p90Millis = Math.min(maxNanos, LatencyHistogram.percentileNanos(counts, 90)) / 1e6;
+            p99Millis = Math.min(maxNanos, LatencyHistogram.percentileNanos(counts, 99)) / 1e6;
+            maxMillis = maxNanos / 1e6;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP90Millis() {
+            return p90Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+    }
+
+    // The log line: the latencies of the interval since the previous line. Runs on the
+    // logger thread only.
+    private final class Interval {
+        private final String name;
+        private final long[][] counts = new long[Operation.values().length + 1][];
+        private final long[] totals = new long[counts.length];
+        private long stalls;
+        private long blockedNanos;
+        private int resets;
+
+        Interval(String name) {
+            this.name = name;
+            for (int i = 0; i < counts.length; i++) counts[i] = new long[LatencyHistogram.BUCKETS];
+        }
+
+        String next() {
+            if (resets != ExpenseMetrics.this.resets) {
+                // Counted from zero again, except the event thread's
+                resets = ExpenseMetrics.this.resets;
+                for (int i = 0; i < Operation.values().length; i++) {
+                    counts[i] = new long[LatencyHistogram.BUCKETS];
+                    totals[i] = 0;
+                }
+            }
+
+            StringBuilder line = new StringBuilder("metrics ").append(LocalTime.now().truncatedTo(ChronoUnit.SECONDS))
+                    .append(" ledger=").append(name);
+            sizes(line);
+            for (Operation operation : Operation.values()) {
+                appendLatency(line, operation.name().toLowerCase(Locale.ROOT), since(operation.ordinal(), latencies[operation.ordinal()]));
+            }
+            Latency events = since(counts.length - 1, EDT_EVENTS);
+            long nowStalls = EDT_STALLS.sum(), nowBlocked = EDT_BLOCKED_NANOS.sum();
+            appendEdt(line, events, nowStalls - stalls, nowBlocked - blockedNanos);
+            stalls = nowStalls;
+            blockedNanos = nowBlocked;
+            return line.toString();
+        }
+
+        // The interval's maximum is only known to its bucket
+        private Latency since(int slot, LatencyHistogram histogram) {
+            long[] now = histogram.counts();
+            long total = histogram.totalNanos();
+            long[] delta = LatencyHistogram.minus(now, counts[slot]);
+            Latency latency = new Latency(delta, total - totals[slot], LatencyHistogram.percentileNanos(delta, 100));
+            counts[slot] = now;
+            totals[slot] = total;
+            return latency;
+        }
+    }
+}
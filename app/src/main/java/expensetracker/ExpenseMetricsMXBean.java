@@ -0,0 +1,44 @@
+package expensetracker;
+
+// What ExpenseMetrics shows over JMX, e.g. in jconsole or VisualVM under expensetracker:type=Ledger.
+// Latencies cover everything since the engine was created or last reset.
+public interface ExpenseMetricsMXBean {
+    // Expenses not deleted
+    int getRows();
+
+    long getHeapUsedBytes();
+
+    // Used heap over rows, so it includes everything else on the heap, garbage too
+    long getHeapBytesPerRow();
+
+    double getLoadSeconds();
+
+    long getLoadRowsPerSecond();
+
+    long getCommittedRows();
+
+    ExpenseMetrics.Latency getCommitLatency();
+
+    ExpenseMetrics.Latency getSaveLatency();
+
+    ExpenseMetrics.Latency getFilterLatency();
+
+    ExpenseMetrics.Latency getSearchLatency();
+
+    ExpenseMetrics.Latency getTotalsLatency();
+
+    ExpenseMetrics.Latency getReportLatency();
+
+    ExpenseMetrics.Latency getSortLatency();
+
+    // Every event the Swing event thread handled; shared by all ledgers of the process
+    ExpenseMetrics.Latency getEdtEventLatency();
+
+    long getEdtStalls();
+
+    double getEdtBlockedSeconds();
+
+    String getSummary();
+
+    void reset();
+}
@@ -0,0 +1,495 @@
+package expensetracker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP front end of ExpenseEngine for other tools; loads no Swing. Each request runs on
+// its own virtual thread. Responses are JSON. An expense list is written out a row at a
+// time once its matches are known, so a large filter's JSON never sits in memory whole;
+// anything that can fail is done first, while an error status can still be sent.
+// Listens on localhost unless a host is given.
+//
+//   java -cp expense-tracker.jar expensetracker.ExpenseServer advanced_expenses.csv 8080
+//
+// GET responses are cached by URL until the ledger next changes. A response larger than
+// an eighth of expensetracker.server.cacheMB (64 by default) is never cached, and the
+// least recently used ones go once the cache is full.
+public class ExpenseServer {
+    private static final String USAGE = String.join("\n",
+            "Usage: ExpenseServer <ledger.csv|ledger.ledger> [port] [host]   (8080 on localhost by default)",
+            "  GET  /expenses?category=C&year=Y&month=1-12&from=yyyy-MM-dd&to=yyyy-MM-dd",
+            "  GET  /search?q=text                     expenses whose category or date contains text",
+            "  GET  /summary                           count and totals by category and month",
+            "  GET  /report?period=yyyy|yyyy-MM|yyyy-MM-dd&top=n",
+            "  POST /expenses                          form fields date=yyyy-MM-dd, category, amount, description");
+    private static final long CACHE_BYTES = Long.getLong("expensetracker.server.cacheMB", 64) << 20;
+    private static final int MAX_FORM_BYTES = 1 << 16;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final ExpenseEngine engine;
+    private final HttpServer server;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+    private final ResponseCache cache = new ResponseCache();
+
+    public ExpenseServer(ExpenseEngine engine, InetSocketAddress address) throws IOException {
+        this.engine = engine;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(requests);
+        server.createContext("/expenses", exchange -> handle(exchange, this::expenses));
+        server.createContext("/search", exchange -> handle(exchange, this::search));
+        server.createContext("/summary", exchange -> handle(exchange, this::summary));
+        server.createContext("/report", exchange -> handle(exchange, this::report));
+        server.createContext("/", exchange -> handle(exchange, e -> sendError(e, 404, "No such endpoint")));
+        engine.addListener(cache);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) usage();
+
+        ExpenseEngine engine = new ExpenseEngine(new File(args[0]));
+        ExpenseMetrics.start(engine, new File(args[0]).getName());
+        ParallelCsvImporter.Report report = engine.load(null);
+        if (report.malformedCount() > 0) {
+            System.err.print("Skipped " + report.malformedCount() + " malformed lines:\n" + report.describe(10));
+        }
+
+        InetSocketAddress address;
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            address = args.length > 2 ? new InetSocketAddress(args[2], port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        }
+        ExpenseServer server = new ExpenseServer(engine, address);
+        server.start();
+        System.err.println("Serving " + args[0] + " on http://" + address.getHostString() + ":" + server.port() + "/");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Waits up to delaySeconds for requests under way
+    public void stop(int delaySeconds) {
+        engine.removeListener(cache);
+        server.stop(delaySeconds);
+        requests.shutdown();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    // Does whatever can fail, checking parameters, paging in archived years, filtering,
+    // while an error status can still be sent, and returns what writes the body
+    private interface JsonResponse {
+        JsonBody prepare() throws IOException;
+    }
+
+    // Writes a prepared body as JSON; only the client going away can stop it
+    private interface JsonBody {
+        void write(Writer out) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try {
+            handler.handle(exchange);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            sendError(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // GET filters, POST adds one expense
+    private void expenses(HttpExchange exchange) throws IOException {
+        if (!exactPath(exchange)) return;
+        if (exchange.getRequestMethod().equals("POST")) {
+            add(exchange);
+            return;
+        }
+        if (!allow(exchange, "GET, POST")) return;
+
+        List<String> criteria = new ArrayList<>();
+        for (Map.Entry<String, String> parameter : parameters(exchange.getRequestURI().getRawQuery()).entrySet()) {
+            criteria.add(parameter.getKey() + "=" + parameter.getValue());
+        }
+        ExpenseFilter filter = ExpenseFilter.parse(criteria);
+        sendJson(exchange, () -> {
+            Matches matches = new Matches();
+            for (int year : archivedYears(filter)) {
+                ExpenseEngine archived = engine.archive().year(year);
+                matches.add(archived, archived.filter(filter), false);
+            }
+            return matches.add(engine, engine.filter(filter), true);
+        });
+    }
+
+    private void add(HttpExchange exchange) throws IOException {
+        Map<String, String> form = parameters(readForm(exchange));
+        int epochDay = Dates.requireIso(required(form, "date"));
+        String category = required(form, "category").trim();
+        long amountMinor = Money.parse(required(form, "amount"));
+        if (category.isEmpty()) throw new IllegalArgumentException("Category is empty");
+        int row = engine.add(epochDay, category, amountMinor, form.getOrDefault("description", ""));
+
+        byte[] body = ("{\"id\":" + row + "}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(201, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        if (!exactPath(exchange) || !allow(exchange, "GET")) return;
+        String text = required(parameters(exchange.getRequestURI().getRawQuery()), "q");
+        sendJson(exchange, () -> {
+            Matches matches = new Matches();
+            for (int year : archivedYears(null)) {
+                ExpenseEngine archived = engine.archive().year(year);
+                matches.add(archived, archived.search(text), false);
+            }
+            return matches.add(engine, engine.search(text), true);
+        });
+    }
+
+    private void summary(HttpExchange exchange) throws IOException {
+        if (!exactPath(exchange) || !allow(exchange, "GET")) return;
+        sendJson(exchange, () -> {
+            StringBuilder sb = new StringBuilder(256);
+            int archived = engine.archive() == null ? 0 : engine.archive().count();
+            sb.append("{\"count\":").append(engine.count() + archived)
+                    .append(",\"archived\":").append(archived)
+                    .append(",\"total\":");
+            Money.appendTo(sb, engine.totalMinor()).append(",\"categories\":[");
+            String separator = "";
+            for (String category : engine.categories()) {
+                sb.append(separator).append("{\"category\":");
+                appendString(sb, category).append(",\"total\":");
+                Money.appendTo(sb, engine.categoryTotal(category)).append('}');
+                separator = ",";
+            }
+            sb.append("],\"months\":[");
+            separator = "";
+            if (!engine.isEmpty()) {
+                for (int monthKey = engine.firstYear() * 12; monthKey < (engine.lastYear() + 1) * 12; monthKey++) {
+                    long total = engine.monthTotal(monthKey);
+                    if (total == 0) continue;
+                    sb.append(separator).append("{\"month\":\"").append(Period.MONTH.format(monthKey)).append("\",\"total\":");
+                    Money.appendTo(sb, total).append('}');
+                    separator = ",";
+                }
+            }
+            sb.append("]}");
+            return out -> out.append(sb);
+        });
+    }
+
+    private void report(HttpExchange exchange) throws IOException {
+        if (!exactPath(exchange) || !allow(exchange, "GET")) return;
+        Map<String, String> query = parameters(exchange.getRequestURI().getRawQuery());
+        String text = required(query, "period");
+        Period period = Period.of(text);
+        int key = period.parse(text);
+        int top = Integer.parseInt(query.getOrDefault("top", "5"));
+        if (top < 0) throw new IllegalArgumentException("top must not be negative");
+        sendJson(exchange, () -> {
+            PeriodReport report = engine.report(period, key, top);
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"period\":\"").append(period.format(key)).append("\",\"total\":");
+            Money.appendTo(sb, report.totalMinor()).append(",\"previousTotal\":");
+            Money.appendTo(sb, report.previousTotalMinor()).append(",\"changePercent\":");
+            if (report.previousTotalMinor() == 0) {
+                sb.append("null");
+            } else {
+                sb.append(Math.round(report.changePercent() * 10) / 10.0);
+            }
+            sb.append(",\"days\":").append(report.days()).append(",\"dailyAverage\":");
+            Money.appendTo(sb, report.dailyAverageMinor()).append(",\"topCategories\":[");
+            String separator = "";
+            for (PeriodReport.CategoryTotal category : report.topCategories()) {
+                sb.append(separator).append("{\"category\":");
+                appendString(sb, category.category()).append(",\"total\":");
+                Money.appendTo(sb, category.totalMinor()).append(",\"share\":").append(Math.round(category.share() * 10) / 10.0).append('}');
+                separator = ",";
+            }
+            sb.append("]}");
+            return out -> out.append(sb);
+        });
+    }
+
+    // Those a filter can match, or all of them without one; none for an in-memory ledger
+    private List<Integer> archivedYears(ExpenseFilter filter) {
+        LedgerArchive archive = engine.archive();
+        if (archive == null) return List.of();
+        return filter == null ? archive.years() : archive.years(filter);
+    }
+
+    // {"expenses":[...],"count":n,"total":t}, written one row at a time from the matching
+    // rows of each ledger, which are already in memory. Archived rows have no id, since
+    // only the ledger's rows can be edited
+    private static final class Matches implements JsonBody {
+        private final List<ExpenseStore.Snapshot> snapshots = new ArrayList<>();
+        private final List<IntList> rows = new ArrayList<>();
+        private final List<Boolean> withIds = new ArrayList<>();
+        private final StringBuilder sb = new StringBuilder(128);
+        private int count;
+        private long totalMinor;
+
+        Matches add(ExpenseEngine engine, IntList matches, boolean withIds) {
+            snapshots.add(engine.snapshot());
+            rows.add(matches);
+            this.withIds.add(withIds);
+            return this;
+        }
+
+        @Override
+        public void write(Writer out) throws IOException {
+            out.write("{\"expenses\":[");
+            for (int i = 0; i < rows.size(); i++) write(out, snapshots.get(i), rows.get(i), withIds.get(i));
+            sb.setLength(0);
+            sb.append("],\"count\":").append(count).append(",\"total\":");
+            out.append(Money.appendTo(sb, totalMinor)).append('}');
+        }
+
+        private void write(Writer out, ExpenseStore.Snapshot snapshot, IntList rows, boolean withIds) throws IOException {
+            for (int i = 0; i < rows.size(); i++) {
+                int row = rows.get(i);
+                long amountMinor = snapshot.amountMinor(row);
+                sb.setLength(0);
+                if (count > 0) sb.append(',');
+                sb.append("{\"id\":");
+                if (withIds) {
+                    sb.append(row);
+                } else {
+                    sb.append("null");
+                }
+                sb.append(",\"date\":\"");
+                Dates.appendIso(sb, snapshot.epochDay(row)).append("\",\"category\":");
+                appendString(sb, snapshot.category(row)).append(",\"amount\":");
+                Money.appendTo(sb, amountMinor).append(",\"description\":");
+                appendString(sb, snapshot.description(row)).append('}');
+                out.append(sb);
+                count++;
+                totalMinor += amountMinor;
+            }
+        }
+    }
+
+    // Sends a GET's body from the cache, or prepares it, then writes it out and caches it
+    // if it turns out small enough. A failure while preparing still gets its error status.
+    private void sendJson(HttpExchange exchange, JsonResponse response) throws IOException {
+        String key = exchange.getRequestURI().toString();
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            exchange.getResponseHeaders().set("X-Cache", "hit");
+            exchange.sendResponseHeaders(200, cached.length);
+            exchange.getResponseBody().write(cached);
+            return;
+        }
+
+        long generation = cache.generation();
+        JsonBody body = response.prepare();
+        exchange.getResponseHeaders().set("X-Cache", "miss");
+        // Length 0: chunked, the body goes out while it is being written
+        exchange.sendResponseHeaders(200, 0);
+        Capture capture = new Capture(exchange.getResponseBody(), CACHE_BYTES / 8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(capture, StandardCharsets.UTF_8), 1 << 16);
+        body.write(out);
+        out.flush();
+        byte[] captured = capture.captured();
+        if (captured != null) cache.put(key, generation, captured);
+    }
+
+    // Passes every byte on and keeps a copy until there are more than limit of them
+    private static final class Capture extends FilterOutputStream {
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Capture(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                if (copy.size() > limit) copy = null;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                if (copy.size() > limit) copy = null;
+            }
+        }
+
+        // Null if the body was too large to keep
+        byte[] captured() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+
+    // Responses by URL, least recently used first. Any change to the ledger empties it
+    // and bumps the generation, so a response made while the change went in, which may
+    // be from before it, is not kept.
+    private static final class ResponseCache implements ExpenseEngine.Listener {
+        private final LinkedHashMap<String, byte[]> responses = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+        private long generation;
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized byte[] get(String key) {
+            return responses.get(key);
+        }
+
+        synchronized void put(String key, long generation, byte[] body) {
+            if (generation != this.generation) return;
+            byte[] replaced = responses.put(key, body);
+            bytes += body.length - (replaced == null ? 0 : replaced.length);
+            Iterator<byte[]> eldest = responses.values().iterator();
+            while (bytes > CACHE_BYTES) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+
+        private synchronized void invalidate() {
+            generation++;
+            responses.clear();
+            bytes = 0;
+        }
+
+        @Override
+        public void expensesAppended(int firstRow, int count) {
+            invalidate();
+        }
+
+        @Override
+        public void expensesChanged() {
+            invalidate();
+        }
+    }
+
+    // The endpoints take no sub-paths
+    private static boolean exactPath(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) return true;
+        sendError(exchange, 404, "No such endpoint");
+        return false;
+    }
+
+    private static boolean allow(HttpExchange exchange, String methods) throws IOException {
+        if (exchange.getRequestMethod().equals("GET")) return true;
+        exchange.getResponseHeaders().set("Allow", methods);
+        sendError(exchange, 405, "Use " + methods);
+        return false;
+    }
+
+    private static String readForm(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        byte[] form = in.readNBytes(MAX_FORM_BYTES + 1);
+        if (form.length > MAX_FORM_BYTES) throw new IllegalArgumentException("Form is larger than " + MAX_FORM_BYTES + " bytes");
+        return new String(form, StandardCharsets.UTF_8);
+    }
+
+    // Decoded "key=value&..." pairs; a key given twice keeps its last value
+    private static Map<String, String> parameters(String encoded) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (encoded == null || encoded.isEmpty()) return parameters;
+        for (String pair : encoded.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String required(Map<String, String> parameters, String key) {
+        String value = parameters.get(key);
+        if (value == null) throw new IllegalArgumentException("Missing " + key);
+        return value;
+    }
+
+    // Status and {"error":message}; nothing can be sent once a body has started
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        StringBuilder sb = new StringBuilder(64).append("{\"error\":");
+        byte[] body = appendString(sb, message == null ? "" : message).append('}').toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException | IllegalStateException e) {
+            // The client has gone, or the response was already under way
+        }
+    }
+
+    private static StringBuilder appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
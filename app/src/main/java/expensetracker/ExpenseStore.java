@@ -0,0 +1,611 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Columnar expense ledger. Each row is an epoch day, a category id, an amount in
+// minor units and a description id held in parallel primitive arrays, so a row
+// costs 20 bytes plus its share of the category and description pools.
+//
+// The columns live in the leaves of a persistent radix trie: a leaf holds LEAF_SIZE
+// rows, each branch BRANCHES children. snapshot() is O(1), it only starts a new epoch
+// and keeps the root. Nodes made in an older epoch may be shared with a snapshot, so
+// an update or delete copies the path to its leaf first, O(log n), and the old version
+// stays intact. Appends write past every snapshot's end and need no copy. The store
+// itself is single-writer.
+//
+// Deleting a row leaves a tombstone, so row ids stay stable for the journal and the
+// indexes, and restoring it is the same path copy. Branches count the deleted rows
+// under each child, which finds the n-th live row in O(log n) as well.
+class ExpenseStore {
+    private static final int LEAF_SHIFT = 10;
+    private static final int LEAF_SIZE = 1 << LEAF_SHIFT;
+    private static final int LEAF_MASK = LEAF_SIZE - 1;
+    private static final int BRANCH_SHIFT = 5;
+    private static final int BRANCHES = 1 << BRANCH_SHIFT;
+    private static final int BRANCH_MASK = BRANCHES - 1;
+    // Changed rows remembered for Snapshot.changedSince
+    private static final int MAX_CHANGES = 1 << 16;
+
+    // A Leaf while depth is 0, otherwise depth levels of Branch above the leaves
+    private Node root;
+    private int depth;
+    // The leaf appends go to, and the rows the trie holds before it has to grow
+    private Leaf tail;
+    private int capacity;
+    private int size;
+    private int deleted;
+    // Updates, deletes, restores and clears so far; appends do not count
+    private int modifications;
+    private final boolean indexed;
+
+    // Nodes made or copied in the current epoch belong to the store alone. Each
+    // snapshot starts a new epoch, after which every node may be shared.
+    private int epoch;
+
+    // Row changed by each modification after changesFrom, for re-sorting only those
+    private IntList changes = new IntList();
+    private int changesFrom;
+
+    private StringPool categories = new StringPool();
+    private StringPool descriptions = new StringPool();
+    private final ExpenseAggregates aggregates = new ExpenseAggregates();
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+    private final DateIndex dateIndex = new DateIndex();
+
+    public ExpenseStore() {
+        this(1024);
+    }
+
+    public ExpenseStore(int capacity) {
+        this(capacity, true);
+    }
+
+    // A batch that is only ever merged into another store with addAll can skip the
+    // aggregates and indexes; they are built once by the store it is merged into
+    public ExpenseStore(int capacity, boolean indexed) {
+        this.indexed = indexed;
+        allocate(capacity);
+    }
+
+    // The first leaf starts at the requested capacity and grows to full size; every
+    // later leaf is allocated full size
+    private void allocate(int capacity) {
+        tail = new Leaf(Math.min(LEAF_SIZE, Math.max(16, capacity)), epoch);
+        root = tail;
+        depth = 0;
+        this.capacity = tail.days.length;
+        size = 0;
+        deleted = 0;
+    }
+
+    // Returns the new row id
+    public int add(int epochDay, String category, long amountMinor, String description) {
+        return addRow(epochDay, categories.intern(category), amountMinor, descriptions.intern(description));
+    }
+
+    public int add(LocalDate date, String category, double amount, String description) {
+        return add((int) date.toEpochDay(), category, Money.toMinor(amount), description);
+    }
+
+    // Appends every row of another store, e.g. a batch parsed off the EDT
+    public void addAll(ExpenseStore batch) {
+        int[] categoryMap = remap(batch.categories, categories);
+        for (int row = 0; row < batch.size; row++) {
+            int descriptionId = descriptions.intern(batch.description(row));
+            addRow(batch.epochDay(row), categoryMap[batch.categoryId(row)], batch.amountMinor(row), descriptionId);
+        }
+    }
+
+    private static int[] remap(StringPool from, StringPool to) {
+        int[] map = new int[from.size()];
+        for (int id = 0; id < map.length; id++) map[id] = to.intern(from.get(id));
+        return map;
+    }
+
+    private int addRow(int epochDay, int categoryId, long amountMinor, int descriptionId) {
+        if (size == capacity) grow();
+        int i = size & LEAF_MASK;
+        tail.days[i] = epochDay;
+        tail.categoryIds[i] = categoryId;
+        tail.amounts[i] = amountMinor;
+        tail.descriptionIds[i] = descriptionId;
+        if (indexed) {
+            aggregates.add(epochDay, categoryId, amountMinor);
+            categoryIndex.add(size, categoryId, categories.get(categoryId));
+            dateIndex.add(size, epochDay);
+        }
+        return size++;
+    }
+
+    public void update(int row, int epochDay, String category, long amountMinor, String description) {
+        int categoryId = categories.intern(category);
+        Leaf leaf = ownLeaf(row, 0);
+        int i = row & LEAF_MASK;
+        if (indexed && !leaf.isDeleted(i)) {
+            aggregates.update(leaf.days[i], leaf.categoryIds[i], leaf.amounts[i], epochDay, categoryId, amountMinor);
+            categoryIndex.move(row, leaf.categoryIds[i], categoryId, category);
+            dateIndex.move(row, leaf.days[i], epochDay);
+        }
+        changed(row);
+        leaf.days[i] = epochDay;
+        leaf.categoryIds[i] = categoryId;
+        leaf.amounts[i] = amountMinor;
+        leaf.descriptionIds[i] = descriptions.intern(description);
+    }
+
+    // Leaves a tombstone; false if the row was already deleted
+    public boolean delete(int row) {
+        if (isDeleted(row)) return false;
+        Leaf leaf = ownLeaf(row, 1);
+        int i = row & LEAF_MASK;
+        leaf.setDeleted(i, true);
+        deleted++;
+        changed(row);
+        if (indexed) {
+            aggregates.remove(leaf.days[i], leaf.categoryIds[i], leaf.amounts[i]);
+            categoryIndex.remove(row, leaf.categoryIds[i]);
+            dateIndex.remove(row, leaf.days[i]);
+        }
+        return true;
+    }
+
+    // Brings a deleted row back under its old id; false if it was not deleted
+    public boolean restore(int row) {
+        if (!isDeleted(row)) return false;
+        Leaf leaf = ownLeaf(row, -1);
+        int i = row & LEAF_MASK;
+        leaf.setDeleted(i, false);
+        deleted--;
+        changed(row);
+        if (indexed) {
+            aggregates.add(leaf.days[i], leaf.categoryIds[i], leaf.amounts[i]);
+            categoryIndex.insert(row, leaf.categoryIds[i], categories.get(leaf.categoryIds[i]));
+            dateIndex.insert(row, leaf.days[i]);
+        }
+        return true;
+    }
+
+    private void changed(int row) {
+        modifications++;
+        if (changes.size() == MAX_CHANGES) forgetChanges();
+        changes.add(row);
+    }
+
+    // A snapshot may hold the old list, so it is replaced rather than cleared
+    private void forgetChanges() {
+        changes = new IntList();
+        changesFrom = modifications;
+    }
+
+    // A new leaf past the last one, or a bigger first leaf while that is the only one
+    private void grow() {
+        if (capacity < LEAF_SIZE) {
+            tail = tail.copy(Math.min(LEAF_SIZE, capacity + (capacity >> 1)), epoch);
+            root = tail;
+            capacity = tail.days.length;
+            return;
+        }
+
+        if (size == LEAF_SIZE << (BRANCH_SHIFT * depth)) {
+            Branch top = new Branch(epoch);
+            top.children[0] = root;
+            top.deletedCounts[0] = deleted;
+            root = top;
+            depth++;
+        }
+        // New nodes go into empty slots, which no snapshot reads
+        Branch branch = (Branch) root;
+        for (int level = depth; level > 1; level--) {
+            int slot = (size >>> shift(level)) & BRANCH_MASK;
+            if (branch.children[slot] == null) branch.children[slot] = new Branch(epoch);
+            branch = (Branch) branch.children[slot];
+        }
+        tail = new Leaf(LEAF_SIZE, epoch);
+        branch.children[(size >>> LEAF_SHIFT) & BRANCH_MASK] = tail;
+        capacity += LEAF_SIZE;
+    }
+
+    // Copies the path to the row's leaf where it may be shared, adding deletedDelta to
+    // the deleted counts on the way
+    private Leaf ownLeaf(int row, int deletedDelta) {
+        root = own(root);
+        Node node = root;
+        for (int level = depth; level > 0; level--) {
+            Branch branch = (Branch) node;
+            int slot = (row >>> shift(level)) & BRANCH_MASK;
+            node = own(branch.children[slot]);
+            branch.children[slot] = node;
+            branch.deletedCounts[slot] += deletedDelta;
+        }
+        return (Leaf) node;
+    }
+
+    private Node own(Node node) {
+        if (node.epoch == epoch) return node;
+        Node copy = node.copy(epoch);
+        if (node == tail) tail = (Leaf) copy;
+        return copy;
+    }
+
+    // Bits of a row id below the child index at this branch level, 1 being the lowest
+    private static int shift(int level) {
+        return LEAF_SHIFT + BRANCH_SHIFT * (level - 1);
+    }
+
+    private static Leaf leaf(Node root, int depth, int row) {
+        Node node = root;
+        for (int level = depth; level > 0; level--) node = ((Branch) node).children[(row >>> shift(level)) & BRANCH_MASK];
+        return (Leaf) node;
+    }
+
+    // Id of the live row at position, counting deleted rows out
+    private static int liveRow(Node root, int depth, int size, int position) {
+        Node node = root;
+        int base = 0;
+        for (int level = depth; level > 0; level--) {
+            Branch branch = (Branch) node;
+            int childRows = 1 << shift(level);
+            int slot = 0;
+            while (true) {
+                int live = Math.min(childRows, size - base) - branch.deletedCounts[slot];
+                if (position < live) break;
+                position -= live;
+                base += childRows;
+                slot++;
+            }
+            node = branch.children[slot];
+        }
+        return base + ((Leaf) node).liveRow(position);
+    }
+
+    // Immutable view of the rows as they are now, O(1). It may be read from any thread
+    // once published safely, e.g. through a volatile field, while this store keeps changing.
+    public Snapshot snapshot() {
+        epoch++;
+        return new Snapshot(this);
+    }
+
+    // Snapshots keep the old trie and pools, the store starts over with new ones
+    public void clear() {
+        allocate(1024);
+        modifications++;
+        forgetChanges();
+        categories = new StringPool();
+        descriptions = new StringPool();
+        aggregates.clear();
+        categoryIndex.clear();
+        dateIndex.clear();
+    }
+
+    // Row ids run from 0 to size, deleted rows included
+    public int size() {
+        return size;
+    }
+
+    // Rows not deleted
+    public int count() {
+        return size - deleted;
+    }
+
+    public int deletedCount() {
+        return deleted;
+    }
+
+    public boolean isDeleted(int row) {
+        return deleted > 0 && leaf(root, depth, row).isDeleted(row & LEAF_MASK);
+    }
+
+    public int epochDay(int row) {
+        return leaf(root, depth, row).days[row & LEAF_MASK];
+    }
+
+    public LocalDate date(int row) {
+        return LocalDate.ofEpochDay(epochDay(row));
+    }
+
+    public int categoryId(int row) {
+        return leaf(root, depth, row).categoryIds[row & LEAF_MASK];
+    }
+
+    public String category(int row) {
+        return categories.get(categoryId(row));
+    }
+
+    public long amountMinor(int row) {
+        return leaf(root, depth, row).amounts[row & LEAF_MASK];
+    }
+
+    public double amount(int row) {
+        return Money.toDouble(amountMinor(row));
+    }
+
+    public String description(int row) {
+        return descriptions.get(descriptionId(row));
+    }
+
+    public int descriptionId(int row) {
+        return leaf(root, depth, row).descriptionIds[row & LEAF_MASK];
+    }
+
+    // Description pool: ids are dense, 0 until descriptionCount()
+    public int descriptionCount() {
+        return descriptions.size();
+    }
+
+    public String descriptionText(int descriptionId) {
+        return descriptions.get(descriptionId);
+    }
+
+    // Category dictionary: ids are dense, 0 until categoryCount()
+    public int categoryCount() {
+        return categories.size();
+    }
+
+    public String categoryName(int categoryId) {
+        return categories.get(categoryId);
+    }
+
+    // Returns -1 for a category that has never been used
+    public int findCategory(String category) {
+        return categories.find(category);
+    }
+
+    public ExpenseAggregates aggregates() {
+        return aggregates;
+    }
+
+    public CategoryIndex categoryIndex() {
+        return categoryIndex;
+    }
+
+    public DateIndex dateIndex() {
+        return dateIndex;
+    }
+
+    public long totalMinor() {
+        return aggregates.total();
+    }
+
+    public String toCSV(int row) {
+        return toCSV(epochDay(row), category(row), amountMinor(row), description(row));
+    }
+
+    // Always one parseable line: row ids in the journal depend on every row reading back
+    public static String toCSV(int epochDay, String category, long amountMinor, String description) {
+        StringBuilder sb = new StringBuilder(32 + category.length() + description.length());
+        Dates.appendIso(sb, epochDay).append(',').append(singleLine(category).replace(',', ' ')).append(',');
+        return Money.appendTo(sb, amountMinor).append(',').append(singleLine(description)).toString();
+    }
+
+    private static String singleLine(String s) {
+        return s.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    static final class Snapshot {
+        private final Node root;
+        private final int depth;
+        private final int size;
+        private final int deleted;
+        private final int modifications;
+        private final long totalMinor;
+        private final int[] changes;
+        private final int changesFrom;
+        private final String[] categoryNames;
+        private final int categoryCount;
+        private final String[] descriptionTexts;
+        private final int descriptionCount;
+
+        private Snapshot(ExpenseStore store) {
+            root = store.root;
+            depth = store.depth;
+            size = store.size;
+            deleted = store.deleted;
+            modifications = store.modifications;
+            totalMinor = store.indexed ? store.aggregates.total() : 0;
+            changes = store.changes.values();
+            changesFrom = store.changesFrom;
+            categoryNames = store.categories.values();
+            categoryCount = store.categories.size();
+            descriptionTexts = store.descriptions.values();
+            descriptionCount = store.descriptions.size();
+        }
+
+        // Row ids run from 0 to size, deleted rows included
+        public int size() {
+            return size;
+        }
+
+        // Rows not deleted
+        public int count() {
+            return size - deleted;
+        }
+
+        public int deletedCount() {
+            return deleted;
+        }
+
+        public long totalMinor() {
+            return totalMinor;
+        }
+
+        // Two snapshots of one store with the same count differ only by appended rows
+        public int modifications() {
+            return modifications;
+        }
+
+        // Rows updated, deleted or restored between an older snapshot of the same store
+        // and this one, possibly repeated; null when that is no longer known
+        public IntList changedSince(int olderModifications) {
+            if (olderModifications < changesFrom || olderModifications > modifications) return null;
+            IntList rows = new IntList(modifications - olderModifications);
+            for (int m = olderModifications; m < modifications; m++) rows.add(changes[m - changesFrom]);
+            return rows;
+        }
+
+        public boolean isDeleted(int row) {
+            checkRow(row);
+            return deleted > 0 && leaf(root, depth, row).isDeleted(row & LEAF_MASK);
+        }
+
+        // Id of the live row at a position from 0 to count(), in id order
+        public int liveRow(int position) {
+            if (position < 0 || position >= count()) throw new IndexOutOfBoundsException("Position " + position + " of " + count());
+            return deleted == 0 ? position : ExpenseStore.liveRow(root, depth, size, position);
+        }
+
+        public int epochDay(int row) {
+            checkRow(row);
+            return leaf(root, depth, row).days[row & LEAF_MASK];
+        }
+
+        public LocalDate date(int row) {
+            return LocalDate.ofEpochDay(epochDay(row));
+        }
+
+        public String category(int row) {
+            return categoryNames[categoryId(row)];
+        }
+
+        public int categoryId(int row) {
+            checkRow(row);
+            return leaf(root, depth, row).categoryIds[row & LEAF_MASK];
+        }
+
+        // Category dictionary: ids are dense, 0 until categoryCount()
+        public int categoryCount() {
+            return categoryCount;
+        }
+
+        public String categoryName(int categoryId) {
+            if (categoryId < 0 || categoryId >= categoryCount) throw new IndexOutOfBoundsException("Category " + categoryId);
+            return categoryNames[categoryId];
+        }
+
+        public long amountMinor(int row) {
+            checkRow(row);
+            return leaf(root, depth, row).amounts[row & LEAF_MASK];
+        }
+
+        public double amount(int row) {
+            return Money.toDouble(amountMinor(row));
+        }
+
+        public String description(int row) {
+            return descriptionTexts[descriptionId(row)];
+        }
+
+        public int descriptionId(int row) {
+            checkRow(row);
+            return leaf(root, depth, row).descriptionIds[row & LEAF_MASK];
+        }
+
+        // Description pool: ids are dense, 0 until descriptionCount()
+        public int descriptionCount() {
+            return descriptionCount;
+        }
+
+        public String descriptionText(int descriptionId) {
+            if (descriptionId < 0 || descriptionId >= descriptionCount) throw new IndexOutOfBoundsException("Description " + descriptionId);
+            return descriptionTexts[descriptionId];
+        }
+
+        public String toCSV(int row) {
+            return ExpenseStore.toCSV(epochDay(row), category(row), amountMinor(row), description(row));
+        }
+
+        private void checkRow(int row) {
+            if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private abstract static class Node {
+        final int epoch;
+
+        Node(int epoch) {
+            this.epoch = epoch;
+        }
+
+        abstract Node copy(int epoch);
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children;
+        // Deleted rows under each child
+        final int[] deletedCounts;
+
+        Branch(int epoch) {
+            this(epoch, new Node[BRANCHES], new int[BRANCHES]);
+        }
+
+        private Branch(int epoch, Node[] children, int[] deletedCounts) {
+            super(epoch);
+            this.children = children;
+            this.deletedCounts = deletedCounts;
+        }
+
+        @Override
+        Branch copy(int epoch) {
+            return new Branch(epoch, children.clone(), deletedCounts.clone());
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final int[] days;
+        final int[] categoryIds;
+        final long[] amounts;
+        final int[] descriptionIds;
+        // One bit per row, null until a row is deleted
+        long[] deleted;
+
+        Leaf(int rows, int epoch) {
+            this(epoch, new int[rows], new int[rows], new long[rows], new int[rows], null);
+        }
+
+        private Leaf(int epoch, int[] days, int[] categoryIds, long[] amounts, int[] descriptionIds, long[] deleted) {
+            super(epoch);
+            this.days = days;
+            this.categoryIds = categoryIds;
+            this.amounts = amounts;
+            this.descriptionIds = descriptionIds;
+            this.deleted = deleted;
+        }
+
+        @Override
+        Leaf copy(int epoch) {
+            return copy(days.length, epoch);
+        }
+
+        Leaf copy(int rows, int epoch) {
+            return new Leaf(epoch, Arrays.copyOf(days, rows), Arrays.copyOf(categoryIds, rows), Arrays.copyOf(amounts, rows),
+                    Arrays.copyOf(descriptionIds, rows), deleted == null ? null : Arrays.copyOf(deleted, (rows + 63) >>> 6));
+        }
+
+        boolean isDeleted(int i) {
+            return deleted != null && (deleted[i >>> 6] & (1L << i)) != 0;
+        }
+
+        void setDeleted(int i, boolean value) {
+            if (deleted == null) deleted = new long[(days.length + 63) >>> 6];
+            if (value) {
+                deleted[i >>> 6] |= 1L << i;
+            } else {
+                deleted[i >>> 6] &= ~(1L << i);
+            }
+        }
+
+        // Index of the live row at position within this leaf
+        int liveRow(int position) {
+            if (deleted == null) return position;
+            for (int word = 0; ; word++) {
+                long live = ~deleted[word];
+                int n = Long.bitCount(live);
+                if (position < n) {
+                    for (; position > 0; position--) live &= live - 1;
+                    return (word << 6) + Long.numberOfTrailingZeros(live);
+                }
+                position -= n;
+            }
+        }
+    }
+}
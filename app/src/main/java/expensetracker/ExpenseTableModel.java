@@ -0,0 +1,284 @@
+package expensetracker;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.JTableHeader;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Table model that reads cells straight from the expense engine instead of
+// keeping its own Object[] copy of every row. A filtered view is just a list of
+// row ids into the ledger, and bulk changes fire a single event. JTable only asks
+// for the visible cells, so only those rows are ever read or formatted.
+//
+// It listens to the engine and follows its changes on the EDT, whichever thread made
+// them. Cells come from the engine snapshot the model last took on the EDT, so JTable
+// never sees a row before its insert event and painting never waits on a writer.
+//
+// Sorting is done here rather than by a TableRowSorter: the whole ledger is shown in
+// a sort order the engine keeps up to date, a filtered view is radix sorted, and
+// either way a row is one array lookup.
+//
+// A filtered view may also show archived expenses, which have no ids in the ledger.
+// They come first, as ids -1, -2, ..., and cannot be edited.
+class ExpenseTableModel extends AbstractTableModel implements ExpenseEngine.Listener {
+    // Whether an expense appended while a filtered view is shown belongs in it
+    interface ViewFilter {
+        boolean matches(ExpenseStore.Snapshot rows, int row);
+    }
+
+    enum Column {
+        DATE("Date", SortedRows.Key.DATE),
+        DAY_MONTH_YEAR("Date", SortedRows.Key.DATE),
+        CATEGORY("Category", SortedRows.Key.CATEGORY),
+        AMOUNT("Amount", SortedRows.Key.AMOUNT),
+        DESCRIPTION("Description", null);
+
+        private final String title;
+        private final SortedRows.Key sortKey;
+
+        Column(String title, SortedRows.Key sortKey) {
+            this.title = title;
+            this.sortKey = sortKey;
+        }
+    }
+
+    // A few screens' worth of cells, so scrolling back and forth reuses the text
+    private static final int CACHED_CELLS = 4096;
+
+    private final ExpenseEngine expenses;
+    private final Column[] columns;
+
+    // Rows announced so far, and null while every live one of them is shown
+    private ExpenseStore.Snapshot rows;
+    private IntList view;
+    // Set with view
+    private ViewFilter viewFilter;
+    // Null unless the view shows archived expenses as well
+    private ExpenseStore.Snapshot archived;
+
+    // Null while unsorted; otherwise the shown rows in ascending key order
+    private SortedRows.Key sortKey;
+    private boolean descending;
+    private int[] order;
+
+    // Formatted text by row id and column; cleared when rows change in place
+    private final Map<Long, String> cells = new LinkedHashMap<Long, String>(CACHED_CELLS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > CACHED_CELLS;
+        }
+    };
+
+    public ExpenseTableModel(ExpenseEngine expenses, Column... columns) {
+        this.expenses = expenses;
+        this.columns = columns;
+        this.rows = expenses.snapshot();
+        expenses.addListener(this);
+    }
+
+    @Override
+    public int getRowCount() {
+        return archivedCount() + (view == null ? rows.count() : view.size());
+    }
+
+    private int archivedCount() {
+        return archived == null ? 0 : archived.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].title;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int row = getExpenseIndex(rowIndex);
+        Column column = columns[columnIndex];
+        Long key = ((long) row << 3) | column.ordinal();
+        String text = cells.get(key);
+        if (text == null) {
+            text = format(row, column);
+            cells.put(key, text);
+        }
+        return text;
+    }
+
+    private String format(int row, Column column) {
+        ExpenseStore.Snapshot rows = this.rows;
+        if (row < 0) {
+            rows = archived;
+            row = -1 - row;
+        }
+        switch (column) {
+            case DATE:
+                return Dates.formatIso(rows.epochDay(row));
+            case DAY_MONTH_YEAR:
+                return Dates.formatDayMonthYear(rows.epochDay(row));
+            case CATEGORY:
+                return rows.category(row);
+            case AMOUNT:
+                return Money.format(rows.amountMinor(row));
+            default:
+                return rows.description(row);
+        }
+    }
+
+    // Negative for an archived expense
+    public int getExpenseIndex(int rowIndex) {
+        if (order != null) return order[descending ? order.length - 1 - rowIndex : rowIndex];
+        if (rowIndex < archivedCount()) return -1 - rowIndex;
+        rowIndex -= archivedCount();
+        return view == null ? rows.liveRow(rowIndex) : view.get(rowIndex);
+    }
+
+    // Clicking a sortable column header sorts by it; clicking again reverses the order
+    public void sortOnHeaderClick(JTable table) {
+        JTableHeader header = table.getTableHeader();
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = header.columnAtPoint(e.getPoint());
+                if (column >= 0) sortBy(table.convertColumnIndexToModel(column));
+            }
+        });
+    }
+
+    public void sortBy(int column) {
+        SortedRows.Key key = columns[column].sortKey;
+        if (key == null) return;
+        descending = key == sortKey && !descending;
+        sortKey = key;
+        resort();
+        fireTableDataChanged();
+    }
+
+    public void unsorted() {
+        sortKey = null;
+        resort();
+        fireTableDataChanged();
+    }
+
+    private void resort() {
+        if (sortKey == null) {
+            order = null;
+        } else if (view == null) {
+            order = expenses.sortedRows(rows, sortKey);
+        } else {
+            order = SortedRows.sort(rows, view.toArray(), sortKey);
+            if (archived != null) {
+                order = SortedRows.mergeOther(rows, order, archived, SortedRows.sort(archived, archived.size(), sortKey), sortKey);
+            }
+        }
+    }
+
+    @Override
+    public void expensesAppended(int firstRow, int count) {
+        onEdt(() -> appended(firstRow + count));
+    }
+
+    @Override
+    public void expensesChanged() {
+        onEdt(this::reload);
+    }
+
+    private static void onEdt(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+
+    // Takes the latest snapshot when it has rows below end not announced yet, so one
+    // insert event covers every append that landed since the last one
+    private void appended(int end) {
+        int size = rows.size();
+        if (end <= size) return;
+
+        ExpenseStore.Snapshot latest = expenses.snapshot();
+        if (latest.modifications() != rows.modifications()) {
+            // Edited since as well; the change event for that is on its way
+            reload();
+            return;
+        }
+        int first = getRowCount();
+        if (view != null) addMatching(latest, size);
+        rows = latest;
+        if (sortKey != null) {
+            // New rows land anywhere in a sorted table
+            resort();
+            fireTableDataChanged();
+        } else if (getRowCount() > first) {
+            fireTableRowsInserted(first, getRowCount() - 1);
+        }
+    }
+
+    // Rows from first on that the filtered view would have shown
+    private void addMatching(ExpenseStore.Snapshot latest, int first) {
+        for (int row = first; row < latest.size(); row++) {
+            if (!latest.isDeleted(row) && viewFilter.matches(latest, row)) view.add(row);
+        }
+    }
+
+    // An edit keeps the current view less the rows deleted since, plus any appended that
+    // match; a cleared ledger drops it
+    private void reload() {
+        ExpenseStore.Snapshot latest = expenses.snapshot();
+        if (latest.size() < rows.size()) {
+            view = null;
+            viewFilter = null;
+            archived = null;
+        } else if (view != null) {
+            IntList live = new IntList(view.size());
+            for (int i = 0; i < view.size(); i++) {
+                if (!latest.isDeleted(view.get(i))) live.add(view.get(i));
+            }
+            view = live;
+            addMatching(latest, rows.size());
+        }
+        rows = latest;
+        cells.clear();
+        resort();
+        fireTableDataChanged();
+    }
+
+    public void showAll() {
+        rows = expenses.snapshot();
+        view = null;
+        viewFilter = null;
+        showArchived(null);
+        resort();
+        fireTableDataChanged();
+    }
+
+    // Row ids from any engine query, which the snapshot taken here holds all of; filter
+    // is the query's test for expenses appended later. The list is copied.
+    public void showOnly(IntList expenseIndexes, ViewFilter filter) {
+        showOnly(expenseIndexes, null, filter);
+    }
+
+    // With the matching archived expenses, e.g. from ExpenseEngine.archivedMatches; null for none
+    public void showOnly(IntList expenseIndexes, ExpenseStore archivedMatches, ViewFilter filter) {
+        rows = expenses.snapshot();
+        view = new IntList(expenseIndexes);
+        viewFilter = filter;
+        showArchived(archivedMatches);
+        resort();
+        fireTableDataChanged();
+    }
+
+    // Cached text of the archived rows shown before would pass for the new ones
+    private void showArchived(ExpenseStore matches) {
+        if (archived != null) cells.clear();
+        archived = matches == null ? null : matches.snapshot();
+    }
+}
@@ -1,44 +1,20 @@
+package expensetracker;
+
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-
-class Expense {
-    LocalDate date;
-    String category;
-    double amount;
-    String description;
-
-    public Expense(LocalDate date, String category, double amount, String description) {
-        this.date = date;
-        this.category = category;
-        this.amount = amount;
-        this.description = description;
-    }
-
-    public String toCSV() {
-        return date + "," + category + "," + amount + "," + description;
-    }
-
-    public Object[] toRow() {
-        return new Object[]{date.toString(), category, amount, description};
-    }
-}
 
 public class ExpenseTrackerGUI extends JFrame {
     private static final String FILE_NAME = "expenses.txt";
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    private ArrayList<Expense> expenses = new ArrayList<>();
-    private DefaultTableModel tableModel;
+    private final ExpenseEngine expenses = new ExpenseEngine(new File(FILE_NAME));
+    private ExpenseTableModel tableModel;
 
     private JTextField dateField, categoryField, amountField, descriptionField;
 
     public ExpenseTrackerGUI() {
+        ExpenseMetrics.start(expenses, FILE_NAME);
         setTitle("Personal Expense Tracker");
         setSize(700, 400);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -73,25 +49,28 @@ public class ExpenseTrackerGUI extends JFrame {
         add(inputPanel, BorderLayout.NORTH);
 
         // Table
-        String[] columnNames = {"Date", "Category", "Amount", "Description"};
-        tableModel = new DefaultTableModel(columnNames, 0);
+        tableModel = new ExpenseTableModel(expenses, ExpenseTableModel.Column.DATE, ExpenseTableModel.Column.CATEGORY,
+                ExpenseTableModel.Column.AMOUNT, ExpenseTableModel.Column.DESCRIPTION);
         JTable table = new JTable(tableModel);
+        tableModel.sortOnHeaderClick(table);
         add(new JScrollPane(table), BorderLayout.CENTER);
 
+        JPanel editPanel = new JPanel();
+        new ExpenseEditActions(expenses, table, tableModel, false, () -> { }).addButtonsTo(editPanel);
+        add(editPanel, BorderLayout.SOUTH);
+
         // Load existing data
         loadExpensesFromFile();
 
         // Event: Add button
         addButton.addActionListener(e -> {
             try {
-                LocalDate date = LocalDate.parse(dateField.getText(), formatter);
+                int date = Dates.requireIso(dateField.getText());
                 String category = categoryField.getText();
-                double amount = Double.parseDouble(amountField.getText());
+                long amount = Money.parse(amountField.getText());
                 String description = descriptionField.getText();
 
-                Expense expense = new Expense(date, category, amount, description);
-                expenses.add(expense);
-                tableModel.addRow(expense.toRow());
+                expenses.add(date, category, amount, description);
 
                 dateField.setText("");
                 categoryField.setText("");
@@ -99,6 +78,8 @@ public class ExpenseTrackerGUI extends JFrame {
                 descriptionField.setText("");
 
                 JOptionPane.showMessageDialog(this, "✅ Expense added!");
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "❌ Error saving expenses.");
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Invalid input. Please check your fields.");
             }
@@ -114,39 +95,30 @@ public class ExpenseTrackerGUI extends JFrame {
         setVisible(true);
     }
 
+    // Reads the file and replays the journaled changes since the last save on top
     private void loadExpensesFromFile() {
-        File file = new File(FILE_NAME);
-        if (!file.exists()) return;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",", 4);
-                LocalDate date = LocalDate.parse(parts[0], formatter);
-                String category = parts[1];
-                double amount = Double.parseDouble(parts[2]);
-                String description = parts[3];
-
-                Expense e = new Expense(date, category, amount, description);
-                expenses.add(e);
-                tableModel.addRow(e.toRow());
+        try {
+            ParallelCsvImporter.Report report = expenses.load(null);
+            if (report.malformedCount() > 0) {
+                JOptionPane.showMessageDialog(this, "⚠️ Skipped " + report.malformedCount() + " malformed lines:\n"
+                        + report.describe(10));
             }
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this, "❌ Error loading expenses.");
         }
     }
 
+    // Every expense is already journaled, this folds the journal into the file before exiting
     private void saveExpensesToFile() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_NAME))) {
-            for (Expense e : expenses) {
-                writer.println(e.toCSV());
-            }
-        } catch (IOException e) {
+        try {
+            expenses.save().get();
+        } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "❌ Error saving expenses.");
         }
     }
 
     public static void main(String[] args) {
+        ExpenseMetrics.watchEventDispatch();
         SwingUtilities.invokeLater(() -> new ExpenseTrackerGUI());
-    }
+    }
 }
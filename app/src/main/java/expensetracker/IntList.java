@@ -0,0 +1,151 @@
+package expensetracker;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Growable int[] used for row-id lists, so views and indexes never box
+class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public IntList(IntList other) {
+        values = Arrays.copyOf(other.values, Math.max(1, other.size));
+        size = other.size;
+    }
+
+    public void add(int value) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void addAll(IntList other) {
+        if (size + other.size > values.length) values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    // For lists kept in ascending order, e.g. row ids
+    public void insertSorted(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) index = -index - 1;
+        add(0);
+        System.arraycopy(values, index, values, index + 1, size - index - 1);
+        values[index] = value;
+    }
+
+    public boolean removeSorted(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) return false;
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Backing array; values below the current size only change through this list.
+    // A replaced array keeps its contents, so a reader holding one stays consistent.
+    int[] values() {
+        return values;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    // Merges two ascending lists into a new ascending list without duplicates
+    public static IntList union(IntList a, IntList b) {
+        IntList result = new IntList(a.size + b.size);
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            int x = a.values[i], y = b.values[j];
+            result.add(Math.min(x, y));
+            if (x <= y) i++;
+            if (y <= x) j++;
+        }
+        while (i < a.size) result.add(a.values[i++]);
+        while (j < b.size) result.add(b.values[j++]);
+        return result;
+    }
+
+    // Merges any number of ascending lists through a bitmap, which keeps ascending
+    // order without sorting: O(maxValue / 64 + total size)
+    public static IntList unionAll(List<IntList> lists) {
+        if (lists.isEmpty()) return new IntList(1);
+        if (lists.size() == 1) return new IntList(lists.get(0));
+
+        int total = 0, max = -1;
+        for (IntList list : lists) {
+            total += list.size;
+            if (list.size > 0) max = Math.max(max, list.values[list.size - 1]);
+        }
+
+        long[] bits = new long[(max >> 6) + 1];
+        for (IntList list : lists) {
+            for (int i = 0; i < list.size; i++) bits[list.values[i] >> 6] |= 1L << list.values[i];
+        }
+
+        IntList result = new IntList(total);
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                result.add((word << 6) + Long.numberOfTrailingZeros(w));
+                w &= w - 1;
+            }
+        }
+        return result;
+    }
+
+    // Intersects two ascending lists. Walks the shorter one and gallops through the
+    // longer one, so a small filter against a large one costs O(small * log large).
+    public static IntList intersect(IntList a, IntList b) {
+        if (a.size > b.size) {
+            IntList t = a;
+            a = b;
+            b = t;
+        }
+
+        IntList result = new IntList(a.size);
+        int from = 0;
+        for (int i = 0; i < a.size && from < b.size; i++) {
+            int value = a.values[i];
+            int step = 1;
+            int hi = from;
+            while (hi < b.size && b.values[hi] < value) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(b.values, from, Math.min(hi + 1, b.size), value);
+            if (index >= 0) {
+                result.add(value);
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return result;
+    }
+}
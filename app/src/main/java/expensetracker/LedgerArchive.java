@@ -0,0 +1,338 @@
+package expensetracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Expenses of past years, moved out of a persisted ledger by ExpenseEngine.archiveBefore
+// so that loading the ledger reads only recent ones. Each year is a binary ledger file
+// in "<ledger>.archive/<yyyy>.ledger", and totals.csv next to them holds every archived
+// month's total per category. Opening reads only totals.csv: totals and month or year
+// reports cover the archive without touching a year file.
+//
+// A year is paged in, read-only, the first time a filter, search or day report needs its
+// rows. The least recently used years are dropped once the ones in memory pass
+// expensetracker.archive.cacheMB (256 by default); the latest one always stays.
+class LedgerArchive {
+    private static final long CACHE_BYTES = Long.getLong("expensetracker.archive.cacheMB", 256) << 20;
+    // Columns, index postings and pooled strings of a paged-in row, roughly
+    private static final int BYTES_PER_ROW = 64;
+    private static final String TOTALS = "totals.csv";
+
+    private final File dir;
+
+    // From totals.csv
+    private final TreeSet<Integer> years = new TreeSet<>();
+    private final LongSumMap monthTotals = new LongSumMap();
+    private final Map<String, LongSumMap> categoryMonthTotals = new LinkedHashMap<>();
+    private final Map<String, Long> categoryTotals = new HashMap<>();
+    private final Map<Integer, List<MonthTotal>> totalsByYear = new TreeMap<>();
+    private long total;
+    private int count;
+
+    // Paged-in years, least recently used first
+    private final LinkedHashMap<Integer, ExpenseEngine> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    LedgerArchive(File ledger) {
+        this.dir = new File(ledger.getPath() + ".archive");
+    }
+
+    // Reads totals.csv; an archive that does not exist is empty
+    synchronized void open() throws IOException {
+        File totals = new File(dir, TOTALS);
+        if (!totals.exists()) return;
+        for (String line : Files.readAllLines(totals.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) add(MonthTotal.parse(line));
+        }
+    }
+
+    private void add(MonthTotal month) {
+        int year = Math.floorDiv(month.monthKey, 12);
+        years.add(year);
+        totalsByYear.computeIfAbsent(year, y -> new ArrayList<>()).add(month);
+        monthTotals.add(month.monthKey, month.totalMinor);
+        categoryMonthTotals.computeIfAbsent(month.category, c -> new LongSumMap()).add(month.monthKey, month.totalMinor);
+        categoryTotals.merge(month.category, month.totalMinor, Long::sum);
+        total += month.totalMinor;
+        count += month.rows;
+    }
+
+    synchronized boolean isEmpty() {
+        return years.isEmpty();
+    }
+
+    synchronized boolean hasYear(int year) {
+        return years.contains(year);
+    }
+
+    // Archived years in ascending order
+    synchronized List<Integer> years() {
+        return new ArrayList<>(years);
+    }
+
+    // Archived years a filter can match, ascending
+    synchronized List<Integer> years(ExpenseFilter filter) {
+        List<Integer> matching = new ArrayList<>();
+        for (int year : years) {
+            if (filter.year != 0 && year != filter.year) continue;
+            if (filter.fromDay != Integer.MIN_VALUE && Dates.epochDay(year, 12, 31) < filter.fromDay) continue;
+            if (filter.toDay != Integer.MAX_VALUE && Dates.epochDay(year, 1, 1) > filter.toDay) continue;
+            matching.add(year);
+        }
+        return matching;
+    }
+
+    synchronized int firstYear() {
+        return years.first();
+    }
+
+    synchronized int lastYear() {
+        return years.last();
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    synchronized long totalMinor() {
+        return total;
+    }
+
+    synchronized List<String> categories() {
+        return new ArrayList<>(categoryMonthTotals.keySet());
+    }
+
+    synchronized long categoryTotal(String category) {
+        return categoryTotals.getOrDefault(category, 0L);
+    }
+
+    // Month and year totals come from totals.csv; a day's pages its year in
+    long periodTotal(Period period, int key) throws IOException {
+        if (period == Period.DAY) {
+            int year = Dates.year(key);
+            return hasYear(year) ? year(year).periodTotal(period, key) : 0;
+        }
+        synchronized (this) {
+            if (period == Period.MONTH) return monthTotals.get(key);
+            long sum = 0;
+            for (int month = 0; month < 12; month++) sum += monthTotals.get(key * 12 + month);
+            return sum;
+        }
+    }
+
+    long categoryPeriodTotal(String category, Period period, int key) throws IOException {
+        if (period == Period.DAY) {
+            int year = Dates.year(key);
+            return hasYear(year) ? year(year).categoryPeriodTotal(category, period, key) : 0;
+        }
+        synchronized (this) {
+            LongSumMap months = categoryMonthTotals.get(category);
+            if (months == null) return 0;
+            if (period == Period.MONTH) return months.get(key);
+            long sum = 0;
+            for (int month = 0; month < 12; month++) sum += months.get(key * 12 + month);
+            return sum;
+        }
+    }
+
+    // Adds every category's total for the period to totals, by name
+    void addCategoryTotals(Period period, int key, Map<String, Long> totals) throws IOException {
+        if (period == Period.DAY) {
+            int year = Dates.year(key);
+            if (hasYear(year)) year(year).addCategoryTotals(period, key, totals);
+            return;
+        }
+        synchronized (this) {
+            for (String category : categoryMonthTotals.keySet()) {
+                long sum = categoryPeriodTotal(category, period, key);
+                if (sum != 0) totals.merge(category, sum, Long::sum);
+            }
+        }
+    }
+
+    // The year's expenses as a read-only ledger, paged in if need be
+    synchronized ExpenseEngine year(int year) throws IOException {
+        ExpenseEngine rows = cache.get(year);
+        if (rows != null) return rows;
+        if (!years.contains(year)) throw new IllegalArgumentException("Year " + year + " is not archived");
+
+        rows = ExpenseEngine.readOnly(yearFile(year));
+        cache.put(year, rows);
+        cachedBytes += bytes(rows);
+        Iterator<ExpenseEngine> eldest = cache.values().iterator();
+        while (cachedBytes > CACHE_BYTES && cache.size() > 1) {
+            cachedBytes -= bytes(eldest.next());
+            eldest.remove();
+        }
+        return rows;
+    }
+
+    // Years in memory right now
+    synchronized int pagedInYears() {
+        return cache.size();
+    }
+
+    private static long bytes(ExpenseEngine rows) {
+        return (long) rows.size() * BYTES_PER_ROW;
+    }
+
+    private File yearFile(int year) {
+        return new File(dir, year + BinaryLedger.EXTENSION);
+    }
+
+    // Writes the archived years of rows next to the ones already archived, each to a
+    // staging file, and lists in the commit where each goes. Returns how many rows are
+    // archived.
+    synchronized int stage(ExpenseStore rows, int beforeYear, Commit commit) throws IOException {
+        Files.createDirectories(dir.toPath());
+        Map<Integer, ExpenseStore> moved = new TreeMap<>();
+        int archived = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.isDeleted(row)) continue;
+            int year = Dates.year(rows.epochDay(row));
+            if (year >= beforeYear) continue;
+            ExpenseStore yearRows = moved.get(year);
+            if (yearRows == null) {
+                yearRows = new ExpenseStore(1 << 12, false);
+                if (years.contains(year)) {
+                    BinaryLedger old = BinaryLedger.open(yearFile(year));
+                    old.readInto(yearRows, 0, old.rowCount());
+                }
+                moved.put(year, yearRows);
+            }
+            yearRows.add(rows.epochDay(row), rows.category(row), rows.amountMinor(row), rows.description(row));
+            archived++;
+        }
+
+        Map<Integer, List<MonthTotal>> totals = new TreeMap<>(totalsByYear);
+        for (Map.Entry<Integer, ExpenseStore> year : moved.entrySet()) {
+            File staged = new File(dir, year.getKey() + BinaryLedger.EXTENSION + ".staged");
+            BinaryLedger.write(year.getValue(), staged);
+            commit.move(staged, yearFile(year.getKey()));
+            totals.put(year.getKey(), MonthTotal.of(year.getValue()));
+        }
+
+        File staged = new File(dir, TOTALS + ".staged");
+        try (FileOutputStream out = new FileOutputStream(staged);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (List<MonthTotal> months : totals.values()) {
+                for (MonthTotal month : months) writer.write(month.toLine());
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        commit.move(staged, new File(dir, TOTALS));
+        return archived;
+    }
+
+    // One category's rows and total in one archived month
+    private static final class MonthTotal {
+        final int monthKey;
+        final String category;
+        final int rows;
+        final long totalMinor;
+
+        MonthTotal(int monthKey, String category, int rows, long totalMinor) {
+            this.monthKey = monthKey;
+            this.category = category;
+            this.rows = rows;
+            this.totalMinor = totalMinor;
+        }
+
+        static List<MonthTotal> of(ExpenseStore rows) {
+            Map<Long, long[]> cells = new TreeMap<>();
+            for (int row = 0; row < rows.size(); row++) {
+                long cell = ((long) Dates.monthKey(rows.epochDay(row)) << 32) | rows.categoryId(row);
+                long[] sums = cells.computeIfAbsent(cell, c -> new long[2]);
+                sums[0]++;
+                sums[1] += rows.amountMinor(row);
+            }
+            List<MonthTotal> months = new ArrayList<>(cells.size());
+            for (Map.Entry<Long, long[]> cell : cells.entrySet()) {
+                int monthKey = (int) (cell.getKey() >> 32);
+                String category = rows.categoryName((int) (long) cell.getKey());
+                months.add(new MonthTotal(monthKey, category, (int) cell.getValue()[0], cell.getValue()[1]));
+            }
+            return months;
+        }
+
+        // "yyyy-MM,<rows>,<total in minor units>,<category>"; the category goes last, commas and all
+        String toLine() {
+            return Period.MONTH.format(monthKey) + "," + rows + "," + totalMinor + ","
+                    + category.replace('\n', ' ').replace('\r', ' ') + "\n";
+        }
+
+        static MonthTotal parse(String line) throws IOException {
+            String[] fields = line.split(",", 4);
+            try {
+                return new MonthTotal(Period.MONTH.parse(fields[0]), fields[3], Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt archive totals line: " + line, e);
+            }
+        }
+    }
+
+    // Files to move into place and files to delete, all at once or not at all. The list
+    // is written next to the ledger first; if the process dies while carrying it out,
+    // finish() on the next load completes it. Without the list nothing has changed.
+    static final class Commit {
+        private final File ledger;
+        private final File list;
+        private final StringBuilder steps = new StringBuilder();
+
+        Commit(File ledger) {
+            this.ledger = ledger;
+            this.list = new File(ledger.getPath() + ".archiving");
+        }
+
+        void move(File from, File to) {
+            steps.append("move\t").append(from.getAbsolutePath()).append('\t').append(to.getAbsolutePath()).append('\n');
+        }
+
+        void delete(File file) {
+            steps.append("delete\t").append(file.getAbsolutePath()).append('\n');
+        }
+
+        void run() throws IOException {
+            File tmp = new File(list.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(steps.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), list.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            finish(ledger);
+        }
+
+        // Carries out a commit list left behind, if there is one; every step can be
+        // repeated safely
+        static void finish(File ledger) throws IOException {
+            File list = new File(ledger.getPath() + ".archiving");
+            if (!list.exists()) return;
+            for (String line : Files.readAllLines(list.toPath(), StandardCharsets.UTF_8)) {
+                String[] step = line.split("\t");
+                if (step[0].equals("move") && new File(step[1]).exists()) {
+                    Files.move(new File(step[1]).toPath(), new File(step[2]).toPath(), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } else if (step[0].equals("delete")) {
+                    Files.deleteIfExists(new File(step[1]).toPath());
+                }
+            }
+            Files.delete(list.toPath());
+        }
+    }
+}
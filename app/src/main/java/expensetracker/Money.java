@@ -0,0 +1,92 @@
+package expensetracker;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+// Amounts are stored as long minor units (paise) so sums never drift. Text is
+// parsed straight into minor units, never through a double.
+final class Money {
+    private Money() {
+    }
+
+    public static long toMinor(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toDouble(long minor) {
+        return minor / 100.0;
+    }
+
+    // Decimal text such as "12", "-3.5" or "1234.567"; digits past the second decimal
+    // round half up. Throws NumberFormatException for anything else.
+    public static long parse(String text) {
+        byte[] bytes = text.trim().getBytes(StandardCharsets.US_ASCII);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    public static long parse(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long units = 0;
+        int unitDigits = 0;
+        for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++, unitDigits++) {
+            if (unitDigits < 17) units = units * 10 + (buf[i] - '0');
+        }
+        int digits = unitDigits;
+
+        int fraction = 0;
+        boolean roundUp = false;
+        if (i < end && buf[i] == '.') {
+            int place = 0;
+            for (i++; i < end && buf[i] >= '0' && buf[i] <= '9'; i++, place++, digits++) {
+                int d = buf[i] - '0';
+                if (place < 2) {
+                    fraction = fraction * 10 + d;
+                } else if (place == 2) {
+                    roundUp = d >= 5;
+                }
+            }
+            if (place == 1) fraction *= 10;
+        }
+
+        // Exponents ("1.0E7" in files written by older versions) and values near the
+        // long range are rare enough for the exact slow path
+        if (i != end || digits == 0 || unitDigits > 16) return parseSlow(buf, start, end);
+
+        long minor = units * 100 + fraction + (roundUp ? 1 : 0);
+        return negative ? -minor : minor;
+    }
+
+    private static long parseSlow(byte[] buf, int start, int end) {
+        String text = new String(buf, start, end - start, StandardCharsets.US_ASCII).trim();
+        try {
+            return new BigDecimal(text).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Not an amount: " + text);
+        }
+    }
+
+    // "1234.50", same output as String.format("%.2f") without going through double
+    public static String format(long minor) {
+        return appendTo(new StringBuilder(24), minor).toString();
+    }
+
+    public static StringBuilder appendTo(StringBuilder sb, long minor) {
+        if (minor < 0) {
+            sb.append('-');
+            minor = -minor;
+        }
+        long fraction = minor % 100;
+        sb.append(minor / 100).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+}
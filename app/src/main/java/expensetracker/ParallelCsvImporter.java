@@ -0,0 +1,229 @@
+package expensetracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Imports an expense CSV on every core. The file is cut into byte ranges that end
+// just after a newline, each range is parsed into its own batch on a fork-join
+// pool, and the batches are handed to the listener strictly in file order, so row
+// ids come out exactly as a sequential read would number them.
+//
+// Malformed lines are skipped and reported with their 1-based line number. Line
+// numbers need the line counts of all earlier ranges, which are only known once
+// those ranges are parsed, so ranges number their lines locally and the caller's
+// thread adds the offset while handing batches over.
+class ParallelCsvImporter {
+    private static final int RANGE_SIZE = 1 << 20;
+    private static final int MAX_REPORTED = 100;
+
+    interface Listener {
+        // Each batch is a new store the listener may keep; return false to stop reading
+        boolean onBatch(ExpenseStore batch, long bytesRead) throws IOException;
+    }
+
+    public static Report read(File file, Listener listener) throws IOException {
+        return read(file, Runtime.getRuntime().availableProcessors(), listener);
+    }
+
+    public static Report read(File file, int parallelism, Listener listener) throws IOException {
+        Report report = new Report();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+
+            // A bounded window of ranges in flight keeps memory flat when the listener
+            // is slower than the parsers
+            ArrayDeque<ForkJoinTask<Range>> inFlight = new ArrayDeque<>();
+            int window = parallelism * 4;
+            long next = 0;
+            long lineOffset = 0;
+
+            while (next < length || !inFlight.isEmpty()) {
+                while (next < length && inFlight.size() < window) {
+                    long end = alignedEnd(channel, next + RANGE_SIZE, length);
+                    inFlight.add(pool.submit(new Range(channel, next, end)));
+                    next = end;
+                }
+
+                Range range = join(inFlight.poll());
+                report.add(range, lineOffset);
+                lineOffset += range.lines;
+                if (range.rows.size() > 0 && !listener.onBatch(range.rows, range.end)) {
+                    report.stopped = true;
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return report;
+    }
+
+    private static Range join(ForkJoinTask<Range> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw new IOException(cause);
+        }
+    }
+
+    // First position after the newline at or following from - 1, so a range that
+    // already ends on a line boundary is not stretched by a whole line
+    private static long alignedEnd(FileChannel channel, long from, long length) throws IOException {
+        if (from >= length) return length;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = from - 1;
+        while (position < length) {
+            probe.clear();
+            int n = channel.read(probe, position);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += n;
+        }
+        return length;
+    }
+
+    // Parses [start, end) of the file. Positional reads make the shared channel safe
+    // to use from every worker at once.
+    private static class Range extends RecursiveTask<Range> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ExpenseStore rows;
+        long lines;
+        final List<Malformed> malformed = new ArrayList<>();
+
+        Range(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Range compute() {
+            byte[] buf = new byte[(int) (end - start)];
+            try {
+                ByteBuffer target = ByteBuffer.wrap(buf);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, start + target.position()) < 0) break;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            rows = new ExpenseStore(buf.length / 40, false);
+            lines = parseLines(buf, 0, rows, malformed);
+            return this;
+        }
+    }
+
+    // Parses every line of buf into rows. Malformed lines are numbered on from
+    // firstLine; returns the number of lines.
+    static long parseLines(byte[] buf, long firstLine, ExpenseStore rows, List<Malformed> malformed) {
+        ExpenseCsvParser parser = new ExpenseCsvParser();
+        long lines = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= buf.length; i++) {
+            if (i < buf.length && buf[i] != '\n') continue;
+            if (i == buf.length && lineStart == i) break;  // no unterminated last line
+            if (!blank(buf, lineStart, i) && !parser.parseInto(buf, lineStart, i, rows)) {
+                malformed.add(new Malformed(firstLine + lines, text(buf, lineStart, i)));
+            }
+            lines++;
+            lineStart = i + 1;
+        }
+        return lines;
+    }
+
+    private static String text(byte[] buf, int start, int end) {
+        if (end > start && buf[end - 1] == '\r') end--;
+        String line = new String(buf, start, Math.min(end - start, Malformed.MAX_TEXT * 4), StandardCharsets.UTF_8);
+        return line.length() > Malformed.MAX_TEXT ? line.substring(0, Malformed.MAX_TEXT) + "..." : line;
+    }
+
+    private static boolean blank(byte[] buf, int start, int end) {
+        return end == start || (end - start == 1 && buf[start] == '\r');
+    }
+
+    public static class Malformed {
+        private static final int MAX_TEXT = 80;
+
+        private final long lineNumber;
+        private final String text;
+
+        Malformed(long lineNumber, String text) {
+            this.lineNumber = lineNumber;
+            this.text = text;
+        }
+
+        public long lineNumber() {
+            return lineNumber;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + text;
+        }
+    }
+
+    // Every malformed line is counted; only the first MAX_REPORTED are kept with their text
+    public static class Report {
+        private int malformedCount;
+        private final List<Malformed> reported = new ArrayList<>();
+        boolean stopped;
+
+        void add(Range range, long lineOffset) {
+            for (Malformed line : range.malformed) {
+                malformedCount++;
+                // Ranges count lines from 0; the offset is every line in the ranges before
+                if (reported.size() < MAX_REPORTED) reported.add(new Malformed(lineOffset + line.lineNumber + 1, line.text));
+            }
+        }
+
+        // False when the listener stopped the read before the end of the file
+        public boolean isComplete() {
+            return !stopped;
+        }
+
+        public int malformedCount() {
+            return malformedCount;
+        }
+
+        public List<Malformed> reported() {
+            return reported;
+        }
+
+        // Up to maxLines of "line N: text", plus a count of the ones left out
+        public String describe(int maxLines) {
+            StringBuilder sb = new StringBuilder();
+            int shown = Math.min(maxLines, reported.size());
+            for (int i = 0; i < shown; i++) sb.append(reported.get(i)).append('\n');
+            if (malformedCount > shown) sb.append("... and ").append(malformedCount - shown).append(" more\n");
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package expensetracker;
+
+import java.util.Locale;
+
+// Calendar periods the aggregates roll expenses up by. Each period of a kind has a
+// dense int key, so the period before key is key - 1.
+enum Period {
+    DAY,
+    MONTH,
+    YEAR;
+
+    // The key of the period holding epochDay
+    public int key(int epochDay) {
+        switch (this) {
+            case DAY:
+                return epochDay;
+            case MONTH:
+                return Dates.monthKey(epochDay);
+            default:
+                return Dates.year(epochDay);
+        }
+    }
+
+    public int firstDay(int key) {
+        switch (this) {
+            case DAY:
+                return key;
+            case MONTH:
+                return Dates.firstDayOfMonth(key);
+            default:
+                return Dates.epochDay(key, 1, 1);
+        }
+    }
+
+    public int lengthInDays(int key) {
+        return firstDay(key + 1) - firstDay(key);
+    }
+
+    // yyyy-MM-dd, yyyy-MM or yyyy, in ASCII digits whatever the locale: archive totals are
+    // written with it
+    public String format(int key) {
+        switch (this) {
+            case DAY:
+                return Dates.formatIso(key);
+            case MONTH:
+                return String.format(Locale.ROOT, "%04d-%02d", Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1);
+            default:
+                return String.format(Locale.ROOT, "%04d", key);
+        }
+    }
+
+    // Accepts what format() writes, working out the kind of period from the length
+    public static Period of(String text) {
+        switch (text.length()) {
+            case 10:
+                return DAY;
+            case 7:
+                return MONTH;
+            case 4:
+                return YEAR;
+            default:
+                throw new IllegalArgumentException("Expected yyyy, yyyy-MM or yyyy-MM-dd: " + text);
+        }
+    }
+
+    public int parse(String text) {
+        if (of(text) != this) throw new IllegalArgumentException("Not a " + name().toLowerCase() + ": " + text);
+        int year = Integer.parseInt(text.substring(0, 4));
+        int month = this == YEAR ? 1 : Integer.parseInt(text.substring(5, 7));
+        int day = this == DAY ? Integer.parseInt(text.substring(8, 10)) : 1;
+        if (!Dates.isValid(year, month, day)) throw new IllegalArgumentException("Invalid date: " + text);
+        return key(Dates.epochDay(year, month, day));
+    }
+}
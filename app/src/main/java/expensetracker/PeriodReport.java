@@ -0,0 +1,106 @@
+package expensetracker;
+
+import java.util.List;
+
+// Summary of one day, month or year, built by ExpenseEngine.report from the rolled-up
+// totals alone: its cost depends on the number of categories, never on the rows.
+public class PeriodReport {
+    private final Period period;
+    private final int key;
+    private final long totalMinor;
+    private final long previousTotalMinor;
+    private final int days;
+    private final List<CategoryTotal> topCategories;
+
+    PeriodReport(Period period, int key, long totalMinor, long previousTotalMinor, int days,
+                 List<CategoryTotal> topCategories) {
+        this.period = period;
+        this.key = key;
+        this.totalMinor = totalMinor;
+        this.previousTotalMinor = previousTotalMinor;
+        this.days = days;
+        this.topCategories = topCategories;
+    }
+
+    public Period period() {
+        return period;
+    }
+
+    public int key() {
+        return key;
+    }
+
+    public long totalMinor() {
+        return totalMinor;
+    }
+
+    // Total of the period just before, e.g. last month for month-over-month
+    public long previousTotalMinor() {
+        return previousTotalMinor;
+    }
+
+    public long changeMinor() {
+        return totalMinor - previousTotalMinor;
+    }
+
+    // NaN when there was nothing to compare with
+    public double changePercent() {
+        return previousTotalMinor == 0 ? Double.NaN : changeMinor() * 100.0 / previousTotalMinor;
+    }
+
+    // Days averaged over: the whole period, or up to today while it is still running
+    public int days() {
+        return days;
+    }
+
+    public long dailyAverageMinor() {
+        return days == 0 ? 0 : Math.round((double) totalMinor / days);
+    }
+
+    // Largest first
+    public List<CategoryTotal> topCategories() {
+        return topCategories;
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(period.format(key)).append(": ").append(Money.format(totalMinor)).append('\n');
+        sb.append("Previous ").append(period.name().toLowerCase()).append(": ").append(Money.format(previousTotalMinor));
+        if (previousTotalMinor != 0) sb.append(String.format(" (%+.1f%%)", changePercent()));
+        sb.append('\n');
+        sb.append("Daily average: ").append(Money.format(dailyAverageMinor())).append(" over ").append(days).append(" days\n");
+        if (!topCategories.isEmpty()) sb.append("Top categories:\n");
+        for (CategoryTotal category : topCategories) sb.append("  ").append(category).append('\n');
+        return sb.toString();
+    }
+
+    public static class CategoryTotal {
+        private final String category;
+        private final long totalMinor;
+        private final double share;
+
+        CategoryTotal(String category, long totalMinor, double share) {
+            this.category = category;
+            this.totalMinor = totalMinor;
+            this.share = share;
+        }
+
+        public String category() {
+            return category;
+        }
+
+        public long totalMinor() {
+            return totalMinor;
+        }
+
+        // Percent of the period's total
+        public double share() {
+            return share;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s (%.1f%%)", category, Money.format(totalMinor), share);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package expensetracker;
+
+import java.util.Arrays;
+
+// Ascending row ids of one category or month. Appended rows go on the end as before;
+// a row inserted or removed in the middle, by an edit, delete or undo, is only noted,
+// and the notes are merged in one pass the next time the list is read, or once there
+// are an eighth as many as rows. An edit is O(log n) amortized instead of shifting the
+// whole list. Readers under the engine's read lock may merge concurrently, hence the
+// synchronization; writers hold its write lock.
+final class PostingList {
+    private static final int MIN_PENDING = 64;
+
+    private IntList rows = new IntList();
+    // Unordered; a row removed and inserted again is in both and cancels out at the merge
+    private final IntList inserted = new IntList(4);
+    private final IntList removed = new IntList(4);
+    private int size;
+
+    // Larger than every row so far
+    synchronized void add(int row) {
+        rows.add(row);
+        size++;
+    }
+
+    synchronized void insert(int row) {
+        inserted.add(row);
+        size++;
+        mergeIfMany();
+    }
+
+    synchronized void remove(int row) {
+        removed.add(row);
+        size--;
+        mergeIfMany();
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Ascending. Do not modify the returned list; a later merge replaces it rather than
+    // changing it, but appends go on the end.
+    synchronized IntList rows() {
+        if (!inserted.isEmpty() || !removed.isEmpty()) merge();
+        return rows;
+    }
+
+    private void mergeIfMany() {
+        if (inserted.size() + removed.size() > Math.max(MIN_PENDING, rows.size() >> 3)) merge();
+    }
+
+    // A row stays when it is in the list or inserted more often than removed
+    private void merge() {
+        int[] insertedRows = inserted.toArray();
+        int[] removedRows = removed.toArray();
+        Arrays.sort(insertedRows);
+        Arrays.sort(removedRows);
+
+        IntList merged = new IntList(size);
+        int n = rows.size(), b = 0, i = 0, r = 0;
+        while (b < n || i < insertedRows.length) {
+            int row = Math.min(b < n ? rows.get(b) : Integer.MAX_VALUE,
+                    i < insertedRows.length ? insertedRows[i] : Integer.MAX_VALUE);
+            int count = 0;
+            for (; b < n && rows.get(b) == row; b++) count++;
+            for (; i < insertedRows.length && insertedRows[i] == row; i++) count++;
+            while (r < removedRows.length && removedRows[r] < row) r++;
+            for (; r < removedRows.length && removedRows[r] == row; r++) count--;
+            if (count > 0) merged.add(row);
+        }
+        rows = merged;
+        inserted.clear();
+        removed.clear();
+    }
+}
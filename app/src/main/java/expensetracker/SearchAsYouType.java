@@ -0,0 +1,252 @@
+package expensetracker;
+
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Runs a search as the user types in a field. Keystrokes are debounced, queries run on
+// a background thread, and a newer keystroke cancels the query still in flight, so the
+// EDT never waits on a search however big the ledger is.
+//
+// Typing usually extends the query ("fo", "foo"), and a row matching the longer query
+// also matched the shorter one, so the last result is narrowed row by row instead of
+// searching the ledger again. Rows appended since are checked too; an edit to existing
+// rows forces a full search.
+//
+// Archived years are searched as well, their matches kept apart from the ledger's row
+// ids and narrowed the same way.
+class SearchAsYouType {
+    enum Mode {
+        // Category contains the query, ignoring case
+        CATEGORY,
+        // Category does, or the yyyy-MM-dd date contains it
+        CATEGORY_OR_DATE;
+
+        IntList search(ExpenseEngine expenses, String query) {
+            return this == CATEGORY ? expenses.rowsInCategories(expenses.matchingCategories(query)) : expenses.search(query);
+        }
+
+        // Null when no archived expense matches
+        ExpenseStore searchArchive(ExpenseEngine expenses, String query) throws IOException {
+            return expenses.archivedMatches(query, this == CATEGORY);
+        }
+
+        // categoryIds: the matching categories of the store the rows come from, among the
+        // first knownCategories of them
+        Matcher matcher(IntList categoryIds, int knownCategories, String query) {
+            return new Matcher(categoryIds, knownCategories, query,
+                    this == CATEGORY_OR_DATE && ExpenseEngine.couldMatchDate(query));
+        }
+    }
+
+    // A query resolved once for narrowing a result: the matching category ids from the
+    // index, and each day's date checked the first time a row of that day comes up, so
+    // no row costs a string. A category added since is checked by name.
+    private static final class Matcher {
+        private final boolean[] categories;
+        private final int knownCategories;
+        private final String lowerQuery;
+        // Null unless dates are matched
+        private final String dateQuery;
+        // 1 the day's date matches, 2 it does not
+        private final LongSumMap days = new LongSumMap();
+
+        Matcher(IntList categoryIds, int knownCategories, String query, boolean matchDates) {
+            int maxId = -1;
+            for (int i = 0; i < categoryIds.size(); i++) maxId = Math.max(maxId, categoryIds.get(i));
+            categories = new boolean[maxId + 1];
+            for (int i = 0; i < categoryIds.size(); i++) categories[categoryIds.get(i)] = true;
+            this.knownCategories = knownCategories;
+            this.lowerQuery = query.toLowerCase(Locale.ROOT);
+            this.dateQuery = matchDates ? query : null;
+        }
+
+        boolean matches(ExpenseStore.Snapshot rows, int row) {
+            int categoryId = rows.categoryId(row);
+            if (categoryId >= knownCategories) {
+                if (rows.categoryName(categoryId).toLowerCase(Locale.ROOT).contains(lowerQuery)) return true;
+            } else if (categoryId < categories.length && categories[categoryId]) {
+                return true;
+            }
+            if (dateQuery == null) return false;
+            int day = rows.epochDay(row);
+            long match = days.get(day);
+            if (match == 0) {
+                match = Dates.formatIso(day).contains(dateQuery) ? 1 : 2;
+                days.add(day, match);
+            }
+            return match == 1;
+        }
+    }
+
+    // rows is null for an empty query, meaning every expense; archived is null unless
+    // archived expenses match, and archiveFailure unless archived years could not be read
+    static final class Result {
+        final String query;
+        final IntList rows;
+        final ExpenseStore archived;
+        final IOException archiveFailure;
+        final long totalMinor;
+        private final ExpenseStore.Snapshot basis;
+        // Null with rows
+        private final Matcher matcher;
+
+        private Result(String query, IntList rows, ExpenseStore archived, IOException archiveFailure, long totalMinor,
+                       ExpenseStore.Snapshot basis, Matcher matcher) {
+            this.query = query;
+            this.rows = rows;
+            this.archived = archived;
+            this.archiveFailure = archiveFailure;
+            this.totalMinor = totalMinor;
+            this.basis = basis;
+            this.matcher = matcher;
+        }
+
+        // Whether a ledger row, e.g. one appended since, matches the query; EDT only
+        boolean matches(ExpenseStore.Snapshot rows, int row) {
+            return matcher.matches(rows, row);
+        }
+    }
+
+    private static final int DEBOUNCE_MILLIS = 150;
+    private static final int CANCEL_CHECK_ROWS = 4096;
+
+    // One thread for every search field; queries are short and only the latest matters
+    private static final ExecutorService SEARCHES = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "expense-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExpenseEngine expenses;
+    private final JTextField field;
+    private final Mode mode;
+    private final Consumer<Result> onResult;
+    private final Timer debounce;
+
+    // EDT only
+    private Future<?> inFlight;
+    private int generation;
+    private Result last;
+
+    public SearchAsYouType(ExpenseEngine expenses, JTextField field, Mode mode, Consumer<Result> onResult) {
+        this.expenses = expenses;
+        this.field = field;
+        this.mode = mode;
+        this.onResult = onResult;
+
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> searchNow());
+        debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+    }
+
+    // Searches for the field's text right away, e.g. from a Search button
+    public void searchNow() {
+        debounce.stop();
+        if (inFlight != null) inFlight.cancel(true);
+
+        String query = field.getText().trim();
+        Result previous = last;
+        int current = ++generation;
+        inFlight = SEARCHES.submit(() -> {
+            Result result = run(query, previous);
+            if (result == null) return;  // cancelled
+            SwingUtilities.invokeLater(() -> {
+                if (current != generation) return;
+                last = result;
+                inFlight = null;
+                onResult.accept(result);
+            });
+        });
+    }
+
+    // Runs on the search thread; returns null when interrupted by a newer query
+    private Result run(String query, Result previous) {
+        ExpenseStore.Snapshot rows = expenses.snapshot();
+        if (query.isEmpty()) return new Result(query, null, null, null, rows.totalMinor(), rows, null);
+
+        String lower = query.toLowerCase(Locale.ROOT);
+        // The engine's categories are at least the snapshot's
+        Matcher matcher = mode.matcher(expenses.matchingCategories(query), rows.categoryCount(), query);
+        IntList matches;
+        ExpenseStore archived = null;
+        IOException archiveFailure = null;
+        if (canRefine(previous, lower, rows)) {
+            matches = new IntList();
+            for (int i = 0; i < previous.rows.size(); i++) {
+                if (i % CANCEL_CHECK_ROWS == 0 && Thread.currentThread().isInterrupted()) return null;
+                int row = previous.rows.get(i);
+                if (matcher.matches(rows, row)) matches.add(row);
+            }
+            for (int row = previous.basis.size(); row < rows.size(); row++) {
+                if (row % CANCEL_CHECK_ROWS == 0 && Thread.currentThread().isInterrupted()) return null;
+                if (matcher.matches(rows, row)) matches.add(row);
+            }
+            // The archive does not change while the ledger is loaded
+            if (previous.archived != null) {
+                archived = narrow(previous.archived, mode.matcher(
+                        previous.archived.categoryIndex().matchingCategories(query), previous.archived.categoryCount(), query));
+            }
+            archiveFailure = previous.archiveFailure;
+        } else {
+            // The engine may be newer than the snapshot; rows it finds beyond it wait for the next search
+            IntList found = mode.search(expenses, query);
+            matches = new IntList(found.size());
+            for (int i = 0; i < found.size() && found.get(i) < rows.size(); i++) matches.add(found.get(i));
+            try {
+                archived = mode.searchArchive(expenses, query);
+            } catch (IOException e) {
+                archiveFailure = e;
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) return null;
+
+        long total = archived == null ? 0 : archived.totalMinor();
+        for (int i = 0; i < matches.size(); i++) total += rows.amountMinor(matches.get(i));
+        return new Result(query, matches, archived, archiveFailure, total, rows, matcher);
+    }
+
+    // Archived matches of a longer query, from those of the shorter one; null for none
+    // or when interrupted
+    private static ExpenseStore narrow(ExpenseStore archived, Matcher matcher) {
+        ExpenseStore.Snapshot rows = archived.snapshot();
+        ExpenseStore narrowed = null;
+        for (int row = 0; row < rows.size(); row++) {
+            if (row % CANCEL_CHECK_ROWS == 0 && Thread.currentThread().isInterrupted()) return null;
+            if (!matcher.matches(rows, row)) continue;
+            if (narrowed == null) narrowed = new ExpenseStore(rows.size(), true);
+            narrowed.add(rows.epochDay(row), rows.category(row), rows.amountMinor(row), rows.description(row));
+        }
+        return narrowed;
+    }
+
+    // Only while the old rows are unchanged and the new query contains the old one
+    private static boolean canRefine(Result previous, String lowerQuery, ExpenseStore.Snapshot rows) {
+        return previous != null && previous.rows != null
+                && previous.basis.modifications() == rows.modifications()
+                && previous.basis.size() <= rows.size()
+                && lowerQuery.contains(previous.query.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,185 @@
+package expensetracker;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+// Row ids ordered by date, category or amount, for tables that sort without a
+// TableRowSorter. Sorting is an LSD radix sort over the digits of a long key, so
+// 10M rows take a few linear passes instead of n log n comparator calls, and digits
+// every key shares are skipped. Ties keep the input order, which is row id order.
+//
+// A sorted permutation stays valid as rows are appended: the new rows are sorted
+// on their own and merged in, O(n + k) instead of a full sort. Rows updated, deleted
+// or restored since are taken out and merged back the same way.
+final class SortedRows {
+    enum Key {
+        DATE,
+        CATEGORY,
+        AMOUNT
+    }
+
+    // Wide digits mean fewer passes over large inputs; narrow ones keep small views
+    // from paying for clearing 64K counters per pass
+    private static final int LARGE_INPUT = 1 << 16;
+    private static final Comparator<String> CATEGORY_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private SortedRows() {
+    }
+
+    // Live rows of [0, count) in order
+    static int[] sort(ExpenseStore.Snapshot rows, int count, Key key) {
+        IntList ids = new IntList(count);
+        for (int row = 0; row < count; row++) {
+            if (!rows.isDeleted(row)) ids.add(row);
+        }
+        return sort(rows, ids.toArray(), key);
+    }
+
+    // Returns ids in order, possibly in a new array; ids itself is overwritten
+    static int[] sort(ExpenseStore.Snapshot rows, int[] ids, Key key) {
+        int n = ids.length;
+        if (n < 2) return ids;
+
+        int[] ranks = key == Key.CATEGORY ? categoryRanks(rows) : null;
+        long[] keys = new long[n];
+        boolean ordered = true;
+        for (int i = 0; i < n; i++) {
+            keys[i] = key(rows, ids[i], key, ranks);
+            if (i > 0 && Long.compareUnsigned(keys[i - 1], keys[i]) > 0) ordered = false;
+        }
+        // Ledgers mostly grow in date order, so by date there is often nothing to do
+        if (ordered) return ids;
+
+        long[] keyBuffer = new long[n];
+        int[] idBuffer = new int[n];
+        int digitBits = n >= LARGE_INPUT ? 16 : 8;
+        int mask = (1 << digitBits) - 1;
+        int[] counts = new int[1 << digitBits];
+        for (int shift = 0; shift < Long.SIZE; shift += digitBits) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) counts[(int) (keys[i] >>> shift) & mask]++;
+            // A digit every key shares would only copy the arrays
+            if (counts[(int) (keys[0] >>> shift) & mask] == n) continue;
+
+            for (int d = 0, start = 0; d < counts.length; d++) {
+                int c = counts[d];
+                counts[d] = start;
+                start += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int slot = counts[(int) (keys[i] >>> shift) & mask]++;
+                keyBuffer[slot] = keys[i];
+                idBuffer[slot] = ids[i];
+            }
+            long[] k = keys;
+            keys = keyBuffer;
+            keyBuffer = k;
+            int[] r = ids;
+            ids = idBuffer;
+            idBuffer = r;
+        }
+        return ids;
+    }
+
+    // sorted holds the live rows of [0, from) in order; returns those of [0, to) in order
+    static int[] extend(ExpenseStore.Snapshot rows, int[] sorted, int from, int to, Key key) {
+        IntList added = new IntList(to - from);
+        for (int row = from; row < to; row++) {
+            if (!rows.isDeleted(row)) added.add(row);
+        }
+        return merge(rows, sorted, sorted.length, sort(rows, added.toArray(), key), key);
+    }
+
+    // sorted holds the live rows of an older snapshot with oldSize rows, in order, and
+    // changed the rows updated, deleted or restored since. Returns the live rows of rows
+    // in order, O(n + k log k) for k changed rows instead of a full sort.
+    static int[] patch(ExpenseStore.Snapshot rows, int[] sorted, int oldSize, IntList changed, Key key) {
+        BitSet dirty = new BitSet(rows.size());
+        for (int i = 0; i < changed.size(); i++) dirty.set(changed.get(i));
+
+        int[] kept = new int[sorted.length];
+        int n = 0;
+        for (int row : sorted) {
+            if (!dirty.get(row)) kept[n++] = row;
+        }
+        // Changed rows come back in id order, then every live appended row
+        IntList added = new IntList();
+        for (int row = dirty.nextSetBit(0); row >= 0 && row < oldSize; row = dirty.nextSetBit(row + 1)) {
+            if (!rows.isDeleted(row)) added.add(row);
+        }
+        for (int row = oldSize; row < rows.size(); row++) {
+            if (!rows.isDeleted(row)) added.add(row);
+        }
+        return merge(rows, kept, n, sort(rows, added.toArray(), key), key);
+    }
+
+    // Merges the first n of sorted with added; equal keys go in row id order, as a full
+    // sort would leave them
+    private static int[] merge(ExpenseStore.Snapshot rows, int[] sorted, int n, int[] added, Key key) {
+        int[] ranks = key == Key.CATEGORY ? categoryRanks(rows) : null;
+        int[] merged = new int[n + added.length];
+        int i = 0, j = 0, out = 0;
+        while (i < n && j < added.length) {
+            int c = Long.compareUnsigned(key(rows, added[j], key, ranks), key(rows, sorted[i], key, ranks));
+            if (c < 0 || (c == 0 && added[j] < sorted[i])) {
+                merged[out++] = added[j++];
+            } else {
+                merged[out++] = sorted[i++];
+            }
+        }
+        System.arraycopy(sorted, i, merged, out, n - i);
+        System.arraycopy(added, j, merged, out + n - i, added.length - j);
+        return merged;
+    }
+
+    // Merges rows sorted with the rows of another store sorted on their own, e.g. archived
+    // expenses shown alongside the ledger's. Row i of other comes out as -1 - i; equal
+    // keys put other's rows first.
+    static int[] mergeOther(ExpenseStore.Snapshot rows, int[] sorted, ExpenseStore.Snapshot other, int[] otherSorted, Key key) {
+        int[] merged = new int[sorted.length + otherSorted.length];
+        int i = 0, j = 0, out = 0;
+        while (i < sorted.length || j < otherSorted.length) {
+            if (i == sorted.length || (j < otherSorted.length && compare(other, otherSorted[j], rows, sorted[i], key) <= 0)) {
+                merged[out++] = -1 - otherSorted[j++];
+            } else {
+                merged[out++] = sorted[i++];
+            }
+        }
+        return merged;
+    }
+
+    // The order of key() for rows of two different stores, whose category ids differ
+    private static int compare(ExpenseStore.Snapshot a, int rowA, ExpenseStore.Snapshot b, int rowB, Key key) {
+        switch (key) {
+            case DATE:
+                return Integer.compare(a.epochDay(rowA), b.epochDay(rowB));
+            case CATEGORY:
+                return CATEGORY_ORDER.compare(a.category(rowA), b.category(rowB));
+            default:
+                return Long.compare(a.amountMinor(rowA), b.amountMinor(rowB));
+        }
+    }
+
+    // Keys compare as unsigned longs in the radix passes, so the sign bit is flipped
+    private static long key(ExpenseStore.Snapshot rows, int row, Key key, int[] ranks) {
+        switch (key) {
+            case DATE:
+                return rows.epochDay(row) ^ Long.MIN_VALUE;
+            case CATEGORY:
+                return ranks[rows.categoryId(row)];
+            default:
+                return rows.amountMinor(row) ^ Long.MIN_VALUE;
+        }
+    }
+
+    // Position of each category id in name order, ignoring case like the search does
+    private static int[] categoryRanks(ExpenseStore.Snapshot rows) {
+        Integer[] ids = new Integer[rows.categoryCount()];
+        for (int id = 0; id < ids.length; id++) ids[id] = id;
+        Arrays.sort(ids, Comparator.comparing((Integer id) -> rows.categoryName(id), CATEGORY_ORDER));
+        int[] ranks = new int[ids.length];
+        for (int rank = 0; rank < ids.length; rank++) ranks[ids[rank]] = rank;
+        return ranks;
+    }
+}
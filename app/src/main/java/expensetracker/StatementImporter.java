@@ -0,0 +1,256 @@
+package expensetracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+// Imports a directory of statement CSVs, e.g. one per account and month, into an
+// engine. Every file is read and parsed on its own virtual thread. Parsed files queue
+// for the calling thread, which drops transactions the ledger already has and appends
+// the rest, many files per commit. At most MAX_IN_FLIGHT files are read and not yet
+// committed at any time; when the ledger falls behind, the other readers block (cheaply,
+// being virtual) before reading, so the whole directory is never held in memory.
+//
+// Statements for overlapping periods repeat transactions. A row is a duplicate while
+// the ledger already holds as many identical rows (date, category, amount and
+// description) as the file has so far: two equal coffees on one statement both import,
+// the same statement imported twice adds nothing.
+final class StatementImporter {
+    private static final int MAX_IN_FLIGHT = 64;
+    private static final int MAX_COMMIT_ROWS = 1 << 16;
+    private static final int MAX_REPORTED = 10;
+
+    private final ExpenseEngine engine;
+
+    // Rows per toCSV key, filled in one day at a time from the engine's date index
+    private final Map<String, Integer> ledgerCounts = new HashMap<>();
+    private final Set<Integer> seededDays = new HashSet<>();
+
+    private StatementImporter(ExpenseEngine engine) {
+        this.engine = engine;
+    }
+
+    // Every *.csv file under dir, subdirectories included
+    static Summary importDirectory(ExpenseEngine engine, File dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir.toPath())) {
+            files = walk.filter(path -> Files.isRegularFile(path)
+                            && path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv"))
+                    .sorted()
+                    .toList();
+        }
+        return new StatementImporter(engine).run(files);
+    }
+
+    private Summary run(List<Path> files) throws IOException {
+        Summary summary = new Summary();
+        BlockingQueue<FileResult> parsed = new ArrayBlockingQueue<>(MAX_IN_FLIGHT);
+        // A permit per file read and not yet committed, so put never blocks
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (Path file : files) {
+                readers.submit(() -> {
+                    inFlight.acquire();
+                    FileResult result;
+                    try {
+                        result = read(file);
+                    } catch (Throwable e) {
+                        // Whatever went wrong, the file is reported, or the loop below waits for it forever
+                        result = new FileResult(file.toFile());
+                        result.failure = new IOException("Could not parse: " + e, e);
+                    }
+                    parsed.put(result);
+                    return null;
+                });
+            }
+
+            List<FileResult> pending = new ArrayList<>();
+            for (int done = 0; done < files.size(); done += pending.size()) {
+                pending.clear();
+                pending.add(take(parsed));
+                drain(parsed, pending);
+                commit(pending);
+                summary.files.addAll(pending);
+                inFlight.release(pending.size());
+            }
+        } finally {
+            // Only a failed commit leaves readers behind, blocked waiting for a permit
+            readers.shutdownNow();
+        }
+        return summary;
+    }
+
+    private static FileResult read(Path path) {
+        FileResult result = new FileResult(path.toFile());
+        try {
+            // Statements are small, one read per file beats streaming it
+            byte[] buf = Files.readAllBytes(path);
+            result.rows = new ExpenseStore(buf.length / 40, false);
+            List<ParallelCsvImporter.Malformed> malformed = new ArrayList<>();
+            ParallelCsvImporter.parseLines(buf, 1, result.rows, malformed);
+            result.malformedCount = malformed.size();
+            result.malformed = new ArrayList<>(malformed.subList(0, Math.min(MAX_REPORTED, malformed.size())));
+        } catch (IOException e) {
+            result.failure = e;
+            result.rows = null;
+        }
+        return result;
+    }
+
+    private static FileResult take(BlockingQueue<FileResult> parsed) throws IOException {
+        try {
+            return parsed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+    }
+
+    // Takes whatever else is already parsed, up to one commit's worth of rows
+    private static void drain(BlockingQueue<FileResult> parsed, List<FileResult> pending) {
+        int rows = pending.get(0).parsedRows();
+        FileResult next;
+        while (rows < MAX_COMMIT_ROWS && (next = parsed.poll()) != null) {
+            pending.add(next);
+            rows += next.parsedRows();
+        }
+    }
+
+    // New rows of every pending file go to the engine in one commit
+    private void commit(List<FileResult> pending) throws IOException {
+        ExpenseStore batch = new ExpenseStore(MAX_COMMIT_ROWS, false);
+        for (FileResult file : pending) {
+            if (file.rows == null) continue;
+
+            Map<String, Integer> fileCounts = new HashMap<>();
+            for (int row = 0; row < file.rows.size(); row++) {
+                int epochDay = file.rows.epochDay(row);
+                String category = file.rows.category(row);
+                long amountMinor = file.rows.amountMinor(row);
+                String description = file.rows.description(row);
+                String key = ExpenseStore.toCSV(epochDay, category, amountMinor, description);
+
+                seed(epochDay);
+                int seen = fileCounts.merge(key, 1, Integer::sum);
+                if (seen > ledgerCounts.getOrDefault(key, 0)) {
+                    ledgerCounts.put(key, seen);
+                    batch.add(epochDay, category, amountMinor, description);
+                    file.imported++;
+                } else {
+                    file.duplicates++;
+                }
+            }
+            // The parsed rows are not needed once counted
+            file.rows = null;
+        }
+        if (batch.size() > 0) engine.addAll(batch);
+    }
+
+    // Counts the rows the ledger already holds for a day the first time it comes up,
+    // archived ones included
+    private void seed(int epochDay) throws IOException {
+        if (!seededDays.add(epochDay)) return;
+        ExpenseFilter day = new ExpenseFilter().between(epochDay, epochDay);
+        IntList rows = engine.filter(day);
+        for (int i = 0; i < rows.size(); i++) ledgerCounts.merge(engine.toCSV(rows.get(i)), 1, Integer::sum);
+        ExpenseStore archived = engine.archivedMatches(day);
+        if (archived == null) return;
+        for (int row = 0; row < archived.size(); row++) ledgerCounts.merge(archived.toCSV(row), 1, Integer::sum);
+    }
+
+    static final class FileResult {
+        private final File file;
+        private ExpenseStore rows;
+        private int imported;
+        private int duplicates;
+        private int malformedCount;
+        private List<ParallelCsvImporter.Malformed> malformed = Collections.emptyList();
+        private IOException failure;
+
+        private FileResult(File file) {
+            this.file = file;
+        }
+
+        private int parsedRows() {
+            return rows == null ? 0 : rows.size();
+        }
+
+        public File file() {
+            return file;
+        }
+
+        public int imported() {
+            return imported;
+        }
+
+        public int duplicates() {
+            return duplicates;
+        }
+
+        public int malformedCount() {
+            return malformedCount;
+        }
+
+        // The first few malformed lines, numbered from 1
+        public List<ParallelCsvImporter.Malformed> malformed() {
+            return malformed;
+        }
+
+        // Null unless the file could not be read
+        public IOException failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            if (failure != null) return file + ": failed, " + failure.getMessage();
+            return file + ": " + imported + " imported, " + duplicates + " duplicates, " + malformedCount + " malformed";
+        }
+    }
+
+    // Per-file results in the order files finished parsing
+    static final class Summary {
+        private final List<FileResult> files = new ArrayList<>();
+
+        public List<FileResult> files() {
+            return files;
+        }
+
+        public int imported() {
+            return files.stream().mapToInt(FileResult::imported).sum();
+        }
+
+        public int duplicates() {
+            return files.stream().mapToInt(FileResult::duplicates).sum();
+        }
+
+        public int malformedCount() {
+            return files.stream().mapToInt(FileResult::malformedCount).sum();
+        }
+
+        public long failed() {
+            return files.stream().filter(file -> file.failure != null).count();
+        }
+
+        public String describe() {
+            return files.size() + " files: " + imported() + " imported, " + duplicates() + " duplicates, "
+                    + malformedCount() + " malformed lines, " + failed() + " unreadable";
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package expensetracker;
+
+import java.util.Arrays;
+
+// Interns strings to dense int ids. Backed by an open-addressing table of ids
+// so lookups allocate nothing beyond the strings themselves.
+class StringPool {
+    private String[] values = new String[16];
+    private int[] slots = new int[32];  // id + 1, 0 means empty
+    private int size;
+
+    public int intern(String value) {
+        int mask = slots.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            String existing = values[slots[slot] - 1];
+            if (existing.equals(value)) return slots[slot] - 1;
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size] = value;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) rehash();
+        return size - 1;
+    }
+
+    // Returns -1 if the value was never interned
+    public int find(String value) {
+        int mask = slots.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            if (values[slots[slot] - 1].equals(value)) return slots[slot] - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String get(int id) {
+        return values[id];
+    }
+
+    // Backing array; ids below the current size never change, later ones may be added.
+    // A replaced array keeps its contents, so a reader holding one stays consistent.
+    String[] values() {
+        return values;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(values[id].hashCode()) & mask;
+            while (newSlots[slot] != 0) slot = (slot + 1) & mask;
+            newSlots[slot] = id + 1;
+        }
+        slots = newSlots;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,90 @@
+package expensetracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryLedgerTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void roundTripKeepsEveryColumnAndLeavesDeletedRowsOut() throws IOException {
+        ExpenseStore store = new ExpenseStore();
+        store.add(Dates.epochDay(1999, 12, 31), "Food", 1250, "plain");
+        store.add(Dates.epochDay(2024, 2, 29), "Café", -500, "refund, with \"quotes\"\nand a newline");
+        store.add(Dates.epochDay(2024, 3, 1), "Food", 0, "");
+        store.add(Dates.epochDay(2024, 3, 2), "Travel", Long.MAX_VALUE, "deleted");
+        store.add(Dates.epochDay(2024, 3, 3), "日本", 42, "unicode 日本語");
+        store.delete(3);
+
+        File file = new File(dir, "l" + BinaryLedger.EXTENSION);
+        BinaryLedger.write(store, file);
+        assertTrue(BinaryLedger.isLedger(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        BinaryLedger ledger = BinaryLedger.open(file);
+        assertEquals(4, ledger.rowCount());
+        int[] kept = {0, 1, 2, 4};
+        for (int row = 0; row < kept.length; row++) {
+            assertEquals(store.epochDay(kept[row]), ledger.epochDay(row));
+            assertEquals(store.category(kept[row]), ledger.category(ledger.categoryId(row)));
+            assertEquals(store.amountMinor(kept[row]), ledger.amountMinor(row));
+            assertEquals(store.description(kept[row]), ledger.description(ledger.descriptionId(row)));
+        }
+
+        ExpenseStore read = new ExpenseStore();
+        ledger.readInto(read, 0, ledger.rowCount());
+        assertEquals(4, read.count());
+        assertEquals(store.totalMinor(), read.totalMinor());
+        assertEquals(2, read.categoryIndex().rows(read.findCategory("Food")).size());
+    }
+
+    @Test
+    void emptyStoreRoundTrips() throws IOException {
+        File file = new File(dir, "empty" + BinaryLedger.EXTENSION);
+        BinaryLedger.write(new ExpenseStore(), file);
+        assertEquals(0, BinaryLedger.open(file).rowCount());
+    }
+
+    @Test
+    void csvIsNotALedger() throws IOException {
+        File csv = new File(dir, "l.csv");
+        Files.write(csv.toPath(), List.of("2024-01-01,Food,12.50,lunch"), StandardCharsets.UTF_8);
+        assertFalse(BinaryLedger.isLedger(csv));
+        assertFalse(BinaryLedger.isLedger(new File(dir, "missing.ledger")));
+        assertThrows(IOException.class, () -> BinaryLedger.open(csv));
+    }
+
+    @Test
+    void importAndExportKeepTheCsvRows() throws IOException {
+        File csv = new File(dir, "l.csv");
+        ExpenseEngine engine = new ExpenseEngine(csv);
+        engine.load(null);
+        for (int i = 0; i < 50; i++) engine.add(Dates.epochDay(2024, 1 + i % 12, 1 + i % 28), "C" + i % 3, 100 + i, "d" + i);
+        engine.update(4, Dates.epochDay(2023, 5, 5), "Edited", 1, "edited");
+        engine.delete(9);
+
+        File ledger = new File(dir, "l" + BinaryLedger.EXTENSION);
+        BinaryLedger.importCsv(csv, ledger);
+        File exported = new File(dir, "exported.csv");
+        BinaryLedger.exportCsv(ledger, exported);
+
+        List<String> lines = Files.readAllLines(exported.toPath(), StandardCharsets.UTF_8);
+        assertEquals(49, lines.size());
+        ExpenseStore.Snapshot rows = engine.snapshot();
+        for (int row = 0, line = 0; row < rows.size(); row++) {
+            if (!rows.isDeleted(row)) assertEquals(rows.toCSV(row), lines.get(line++));
+        }
+    }
+}
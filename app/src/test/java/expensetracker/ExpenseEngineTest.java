@@ -0,0 +1,148 @@
+package expensetracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpenseEngineTest {
+    private static final String[] CATEGORIES = {"Food", "Travel", "Rent", "Books", "Fuel", "Gifts"};
+    private static final int FIRST_DAY = Dates.epochDay(2023, 1, 1);
+    private static final int DAYS = 730;
+
+    @TempDir
+    File dir;
+
+    private static int randomDay(Random random) {
+        return FIRST_DAY + random.nextInt(DAYS);
+    }
+
+    private static String randomCategory(Random random) {
+        return CATEGORIES[random.nextInt(CATEGORIES.length)];
+    }
+
+    private static void fill(ExpenseEngine engine, Random random, int rows) throws IOException {
+        for (int i = 0; i < rows; i++) engine.add(randomDay(random), randomCategory(random), 100 + i, "");
+    }
+
+    // Moves rows between categories and months, so their postings leave one list and
+    // land in the middle of another
+    private static void edit(ExpenseEngine engine, Random random, int edits) throws IOException {
+        for (int i = 0; i < edits; i++) {
+            int row = random.nextInt(engine.size());
+            int action = random.nextInt(6);
+            if (action < 4 && engine.isDeleted(row)) continue;
+            switch (action) {
+                case 0, 1, 2 -> engine.update(row, randomDay(random), randomCategory(random),
+                        engine.amountMinor(row), engine.description(row));
+                case 3 -> engine.delete(row);
+                case 4 -> engine.undo();
+                default -> engine.redo();
+            }
+        }
+    }
+
+    private static int[] scan(ExpenseEngine engine, IntPredicate matches) {
+        IntList rows = new IntList();
+        for (int row = 0; row < engine.size(); row++) {
+            if (!engine.isDeleted(row) && matches.test(row)) rows.add(row);
+        }
+        return rows.toArray();
+    }
+
+    private static List<ExpenseFilter> filters() {
+        List<ExpenseFilter> filters = new ArrayList<>();
+        for (String category : CATEGORIES) filters.add(new ExpenseFilter().category(category));
+        filters.add(new ExpenseFilter().year(2023));
+        filters.add(new ExpenseFilter().year(2024).month(2));
+        filters.add(new ExpenseFilter().month(12));
+        filters.add(new ExpenseFilter().category("Travel").year(2024).month(7));
+        filters.add(new ExpenseFilter().category("Rent").between(FIRST_DAY + 100, FIRST_DAY + 400));
+        return filters;
+    }
+
+    private static final String[] QUERIES = {"o", "FOOD", "ent", "2023-0", "-15", "2024-02-29"};
+
+    // Filter and search go through the category and date postings; the scan does not
+    private static void assertIndexesMatchAScan(ExpenseEngine engine) {
+        for (ExpenseFilter filter : filters()) {
+            assertArrayEquals(scan(engine, row -> matches(engine, filter, row)), engine.filter(filter).toArray());
+        }
+        for (String query : QUERIES) {
+            String lower = query.toLowerCase();
+            assertArrayEquals(scan(engine, row -> engine.category(row).toLowerCase().contains(lower)
+                    || engine.date(row).toString().contains(query)), engine.search(query).toArray(), query);
+        }
+    }
+
+    private static boolean matches(ExpenseEngine engine, ExpenseFilter filter, int row) {
+        LocalDate date = engine.date(row);
+        int day = engine.epochDay(row);
+        return (filter.category == null || filter.category.equals(engine.category(row)))
+                && (filter.year == 0 || date.getYear() == filter.year)
+                && (filter.month == 0 || date.getMonthValue() == filter.month)
+                && day >= filter.fromDay && day <= filter.toDay;
+    }
+
+    @Test
+    void editsKeepCategoryAndMonthPostingsInStep() throws IOException, ExecutionException, InterruptedException {
+        Random random = new Random(7);
+        File ledger = new File(dir, "expenses.csv");
+        ExpenseEngine engine = new ExpenseEngine(ledger);
+        engine.load(null);
+        fill(engine, random, 3000);
+        assertIndexesMatchAScan(engine);
+
+        // Category lists hold about 500 rows and month lists about 125, so fewer than 64
+        // edits leave notes to merge on read while hundreds merge them while writing too
+        for (int edits : new int[]{1, 5, 20, 300, 2, 1000, 40}) {
+            edit(engine, random, edits);
+            assertIndexesMatchAScan(engine);
+            // Read twice: the second read finds the notes already merged
+            assertIndexesMatchAScan(engine);
+        }
+
+        // Rebuilt from the journal, and from the compacted ledger, the postings hold no notes
+        ExpenseEngine replayed = new ExpenseEngine(ledger);
+        replayed.load(null);
+        assertSameRows(engine, replayed);
+        engine.save().get();
+        ExpenseEngine compacted = new ExpenseEngine(ledger);
+        compacted.load(null);
+        assertSameRows(engine, compacted);
+        assertIndexesMatchAScan(compacted);
+    }
+
+    @Test
+    void appendsAfterEditsLandAtTheEndOfThePostings() throws IOException {
+        Random random = new Random(11);
+        ExpenseEngine engine = new ExpenseEngine();
+        fill(engine, random, 500);
+        for (int round = 0; round < 20; round++) {
+            edit(engine, random, 30);
+            fill(engine, random, 25);
+            assertIndexesMatchAScan(engine);
+        }
+    }
+
+    private static void assertSameRows(ExpenseEngine expected, ExpenseEngine actual) {
+        for (ExpenseFilter filter : filters()) {
+            assertArrayEquals(expected.filter(filter).toArray(), actual.filter(filter).toArray());
+        }
+        for (String query : QUERIES) {
+            assertArrayEquals(expected.search(query).toArray(), actual.search(query).toArray(), query);
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.count(), actual.count());
+    }
+}
@@ -0,0 +1,176 @@
+package expensetracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpenseJournalTest {
+    private static final int DAY = Dates.epochDay(2024, 3, 1);
+
+    @TempDir
+    File dir;
+
+    private File snapshot() {
+        return new File(dir, "expenses.csv");
+    }
+
+    private File journalFile() {
+        return new File(dir, "expenses.csv.journal");
+    }
+
+    // Three adds, an update, two deletes and a restore
+    private void writeRecords(ExpenseJournal journal) throws IOException {
+        journal.recordAdd(0, DAY, "Food", 1250, "lunch, with a comma");
+        journal.recordAdd(1, DAY + 1, "Travel", 900, "line\nbreak \\ backslash");
+        journal.recordAdd(2, DAY + 2, "Food", 300, "");
+        journal.recordUpdate(0, DAY - 40, "Rent", 50000, "march");
+        journal.recordDeletes(rows(1, 2));
+        journal.recordRestores(rows(2));
+    }
+
+    private static void assertReplayed(ExpenseStore store) {
+        assertEquals(3, store.size());
+        assertEquals(2, store.count());
+        assertEquals("Rent", store.category(0));
+        assertEquals(DAY - 40, store.epochDay(0));
+        assertEquals(50000, store.amountMinor(0));
+        assertEquals("march", store.description(0));
+        assertTrue(store.isDeleted(1));
+        assertEquals("line\nbreak \\ backslash", store.description(1));
+        assertFalse(store.isDeleted(2));
+    }
+
+    @Test
+    void replayAppliesEveryKindOfRecord() throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(snapshot());
+        assertEquals(0, journal.replay(new ExpenseStore()));
+        writeRecords(journal);
+        journal.close();
+
+        ExpenseStore store = new ExpenseStore();
+        assertEquals(7, new ExpenseJournal(snapshot()).replay(store));
+        assertReplayed(store);
+    }
+
+    @Test
+    void addsTheSnapshotAlreadyHoldsAreSkipped() throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(snapshot());
+        journal.replay(new ExpenseStore());
+        writeRecords(journal);
+        journal.close();
+
+        // As after a crash between writing the snapshot and deleting the journal
+        ExpenseStore store = new ExpenseStore();
+        store.add(DAY, "Food", 1250, "lunch, with a comma");
+        store.add(DAY + 1, "Travel", 900, "line\nbreak \\ backslash");
+        new ExpenseJournal(snapshot()).replay(store);
+        assertReplayed(store);
+    }
+
+    @Test
+    void tornTailIsCutOffAndAppendingCarriesOn() throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(snapshot());
+        journal.replay(new ExpenseStore());
+        writeRecords(journal);
+        journal.close();
+        long intact = journalFile().length();
+        Files.write(journalFile().toPath(), "1a2b3c A,3,2024-03".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        ExpenseStore store = new ExpenseStore();
+        journal = new ExpenseJournal(snapshot());
+        assertEquals(7, journal.replay(store));
+        assertEquals(intact, journalFile().length());
+        journal.recordAdd(3, DAY + 3, "Books", 2000, "after the tear");
+        journal.close();
+
+        store = new ExpenseStore();
+        new ExpenseJournal(snapshot()).replay(store);
+        assertEquals(4, store.size());
+        assertEquals("Books", store.category(3));
+        assertReplayed(withoutLastRow(store));
+    }
+
+    @Test
+    void replayStopsAtACorruptRecord() throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(snapshot());
+        journal.replay(new ExpenseStore());
+        writeRecords(journal);
+        journal.close();
+
+        // Change the amount of the update without fixing its checksum
+        String text = Files.readString(journalFile().toPath(), StandardCharsets.UTF_8);
+        Files.writeString(journalFile().toPath(), text.replace(",50000,", ",50001,"), StandardCharsets.UTF_8);
+
+        ExpenseStore store = new ExpenseStore();
+        assertEquals(3, new ExpenseJournal(snapshot()).replay(store));
+        assertEquals(3, store.count());
+        assertEquals("Food", store.category(0));
+        assertEquals(1250, store.amountMinor(0));
+    }
+
+    @Test
+    void readLeavesTheFilesAlone() throws IOException {
+        ExpenseJournal journal = new ExpenseJournal(snapshot());
+        journal.replay(new ExpenseStore());
+        writeRecords(journal);
+        journal.close();
+        Files.write(journalFile().toPath(), "torn".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        byte[] before = Files.readAllBytes(journalFile().toPath());
+
+        ExpenseStore store = new ExpenseStore();
+        assertEquals(7, new ExpenseJournal(snapshot()).read(store));
+        assertReplayed(store);
+        assertArrayEquals(before, Files.readAllBytes(journalFile().toPath()));
+        assertFalse(snapshot().exists());
+    }
+
+    @Test
+    void compactionFoldsTheJournalIntoTheSnapshot() throws IOException, ExecutionException, InterruptedException {
+        ExpenseJournal journal = new ExpenseJournal(snapshot());
+        journal.replay(new ExpenseStore());
+        writeRecords(journal);
+        journal.compactInBackground().get();
+        journal.recordUpdate(2, DAY + 2, "Food", 301, "after compacting");
+        journal.close();
+
+        assertTrue(snapshot().exists());
+        assertFalse(new File(dir, "expenses.csv.journal.compacting").exists());
+        assertEquals("1\n", Files.readString(new File(dir, "expenses.csv.deleted").toPath()));
+
+        ExpenseEngine engine = new ExpenseEngine(snapshot());
+        engine.load(null);
+        assertEquals(3, engine.size());
+        assertEquals(2, engine.count());
+        assertEquals("Rent", engine.category(0));
+        assertTrue(engine.isDeleted(1));
+        assertEquals(301, engine.amountMinor(2));
+        assertEquals("after compacting", engine.description(2));
+    }
+
+    private static IntList rows(int... rows) {
+        IntList list = new IntList();
+        for (int row : rows) list.add(row);
+        return list;
+    }
+
+    private static ExpenseStore withoutLastRow(ExpenseStore store) {
+        ExpenseStore copy = new ExpenseStore();
+        for (int row = 0; row < store.size() - 1; row++) {
+            copy.add(store.epochDay(row), store.category(row), store.amountMinor(row), store.description(row));
+            if (store.isDeleted(row)) copy.delete(row);
+        }
+        return copy;
+    }
+}
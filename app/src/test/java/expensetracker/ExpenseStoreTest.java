@@ -0,0 +1,140 @@
+package expensetracker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpenseStoreTest {
+    private static final int DAY = Dates.epochDay(2024, 3, 1);
+
+    // Several leaves, so changes copy paths through branches
+    private static ExpenseStore store(int rows) {
+        ExpenseStore store = new ExpenseStore();
+        for (int row = 0; row < rows; row++) store.add(DAY + row % 60, "C" + row % 5, 100 + row, "d" + row);
+        return store;
+    }
+
+    @Test
+    void snapshotKeepsItsRowsWhileTheStoreChanges() {
+        ExpenseStore store = store(5000);
+        ExpenseStore.Snapshot before = store.snapshot();
+        long totalBefore = before.totalMinor();
+
+        store.update(10, DAY - 1, "Changed", 1, "changed");
+        store.delete(2000);
+        store.delete(4999);
+        store.add(DAY, "New", 7, "new");
+
+        assertEquals(5000, before.size());
+        assertEquals(5000, before.count());
+        assertEquals(totalBefore, before.totalMinor());
+        assertEquals("C0", before.category(10));
+        assertEquals(110, before.amountMinor(10));
+        assertEquals(DAY + 10, before.epochDay(10));
+        assertFalse(before.isDeleted(2000));
+        assertThrows(IndexOutOfBoundsException.class, () -> before.epochDay(5000));
+
+        ExpenseStore.Snapshot after = store.snapshot();
+        assertEquals(5001, after.size());
+        assertEquals(4999, after.count());
+        assertEquals("Changed", after.category(10));
+        assertTrue(after.isDeleted(2000));
+        assertEquals("New", after.category(5000));
+        assertEquals(totalBefore - 110 + 1 - 2100 - 5099 + 7, after.totalMinor());
+    }
+
+    @Test
+    void eachSnapshotSeesOnlyTheChangesBeforeIt() {
+        ExpenseStore store = store(3000);
+        ExpenseStore.Snapshot first = store.snapshot();
+        store.update(1500, DAY, "Second", 2, "");
+        ExpenseStore.Snapshot second = store.snapshot();
+        store.update(1500, DAY, "Third", 3, "");
+        store.delete(1501);
+
+        assertEquals("C0", first.category(1500));
+        assertEquals("Second", second.category(1500));
+        assertEquals("Third", store.category(1500));
+        assertFalse(second.isDeleted(1501));
+        assertTrue(store.isDeleted(1501));
+    }
+
+    @Test
+    void deleteLeavesATombstoneAndRestoreBringsTheRowBack() {
+        ExpenseStore store = store(3000);
+        int category = store.findCategory("C2");
+        long total = store.totalMinor();
+
+        assertTrue(store.delete(1027));
+        assertFalse(store.delete(1027));
+        assertEquals(3000, store.size());
+        assertEquals(2999, store.count());
+        assertTrue(store.isDeleted(1027));
+        assertEquals(total - 1127, store.totalMinor());
+        assertFalse(contains(store.categoryIndex().rows(category), 1027));
+        assertFalse(contains(store.dateIndex().rowsInMonth(Dates.monthKey(store.epochDay(1027))), 1027));
+
+        assertTrue(store.restore(1027));
+        assertFalse(store.restore(1027));
+        assertEquals(3000, store.count());
+        assertEquals(total, store.totalMinor());
+        assertTrue(contains(store.categoryIndex().rows(category), 1027));
+        assertTrue(contains(store.dateIndex().rowsInMonth(Dates.monthKey(store.epochDay(1027))), 1027));
+        assertEquals("d1027", store.description(1027));
+    }
+
+    @Test
+    void liveRowSkipsDeletedRowsAcrossLeaves() {
+        ExpenseStore store = store(5000);
+        for (int row = 0; row < 5000; row += 3) store.delete(row);
+        ExpenseStore.Snapshot rows = store.snapshot();
+
+        int position = 0;
+        for (int row = 0; row < 5000; row++) {
+            if (row % 3 != 0) assertEquals(row, rows.liveRow(position++));
+        }
+        assertEquals(rows.count(), position);
+        assertThrows(IndexOutOfBoundsException.class, () -> rows.liveRow(rows.count()));
+    }
+
+    @Test
+    void changedSinceListsTheRowsChangedBetweenSnapshots() {
+        ExpenseStore store = store(100);
+        ExpenseStore.Snapshot older = store.snapshot();
+        store.add(DAY, "Appended", 1, "");
+        store.update(5, DAY, "C1", 1, "");
+        store.delete(7);
+        store.restore(7);
+        ExpenseStore.Snapshot newer = store.snapshot();
+
+        assertArrayEquals(new int[]{5, 7, 7}, newer.changedSince(older.modifications()).toArray());
+        assertEquals(0, newer.changedSince(newer.modifications()).size());
+        assertNull(older.changedSince(newer.modifications()));
+    }
+
+    @Test
+    void clearLeavesSnapshotsIntact() {
+        ExpenseStore store = store(2000);
+        ExpenseStore.Snapshot before = store.snapshot();
+        store.clear();
+        store.add(DAY, "Fresh", 1, "fresh");
+
+        assertEquals(1, store.size());
+        assertEquals(1, store.totalMinor());
+        assertEquals(2000, before.size());
+        assertEquals("C4", before.category(1999));
+        assertEquals("Fresh", store.category(0));
+    }
+
+    private static boolean contains(IntList rows, int row) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i) == row) return true;
+        }
+        return false;
+    }
+}
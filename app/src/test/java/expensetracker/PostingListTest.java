@@ -0,0 +1,79 @@
+package expensetracker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingListTest {
+    @Test
+    void appendedRowsStayInOrder() {
+        PostingList list = new PostingList();
+        for (int row = 0; row < 10; row++) list.add(row * 3);
+        assertArrayEquals(new int[]{0, 3, 6, 9, 12, 15, 18, 21, 24, 27}, list.rows().toArray());
+        assertEquals(10, list.size());
+    }
+
+    @Test
+    void insertsAndRemovesAreMergedOnRead() {
+        PostingList list = new PostingList();
+        for (int row = 0; row < 10; row += 2) list.add(row);
+        list.insert(5);
+        list.remove(4);
+        list.insert(1);
+        assertEquals(6, list.size());
+        assertArrayEquals(new int[]{0, 1, 2, 5, 6, 8}, list.rows().toArray());
+    }
+
+    @Test
+    void removingAndInsertingARowAgainCancelsOut() {
+        PostingList list = new PostingList();
+        for (int row = 0; row < 5; row++) list.add(row);
+        list.remove(2);
+        list.insert(2);
+        list.remove(3);
+        assertArrayEquals(new int[]{0, 1, 2, 4}, list.rows().toArray());
+
+        list.remove(4);
+        list.remove(0);
+        list.remove(1);
+        list.remove(2);
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.rows().size());
+    }
+
+    // Enough edits between reads to merge while writing as well as on read
+    @Test
+    void matchesASortedSetUnderRandomEdits() {
+        Random random = new Random(42);
+        PostingList list = new PostingList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        int next = 0;
+        for (int round = 0; round < 200; round++) {
+            int edits = random.nextInt(300);
+            for (int i = 0; i < edits; i++) {
+                int action = random.nextInt(3);
+                if (action == 0 || expected.isEmpty()) {
+                    next += 1 + random.nextInt(3);
+                    list.add(next);
+                    expected.add(next);
+                } else if (action == 1) {
+                    Integer row = expected.ceiling(random.nextInt(next + 1));
+                    if (row == null) row = expected.first();
+                    list.remove(row);
+                    expected.remove(row);
+                } else {
+                    int row = random.nextInt(next + 1);
+                    if (expected.add(row)) list.insert(row);
+                }
+            }
+            assertEquals(expected.size(), list.size());
+            if (round % 3 == 0) assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), list.rows().toArray());
+        }
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), list.rows().toArray());
+    }
+}
@@ -0,0 +1,105 @@
+package expensetracker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SortedRowsTest {
+    private static final int DAY = Dates.epochDay(2024, 3, 1);
+    private static final String[] CATEGORIES = {"food", "Food", "Travel", "rent", "Äpfel", "books"};
+
+    // Few distinct keys, so most rows tie with others
+    private static void addRandomRow(ExpenseStore store, Random random) {
+        store.add(DAY + random.nextInt(40) - 20, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                random.nextInt(2001) - 1000, "");
+    }
+
+    private static ExpenseStore store(Random random, int rows) {
+        ExpenseStore store = new ExpenseStore();
+        for (int row = 0; row < rows; row++) addRandomRow(store, random);
+        return store;
+    }
+
+    // What every sort has to agree with: the key, then the row id
+    private static int[] expected(ExpenseStore.Snapshot rows, SortedRows.Key key) {
+        Comparator<Integer> order = switch (key) {
+            case DATE -> Comparator.comparingInt(rows::epochDay);
+            case CATEGORY -> Comparator.comparing(rows::category,
+                    String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()));
+            case AMOUNT -> Comparator.comparingLong(rows::amountMinor);
+        };
+        return IntStream.range(0, rows.size()).filter(row -> !rows.isDeleted(row)).boxed()
+                .sorted(order.thenComparing(Comparator.naturalOrder())).mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void sortOrdersByKeyThenRowId() {
+        Random random = new Random(1);
+        for (int size : new int[]{0, 1, 2, 100, 5000, 70_000}) {
+            ExpenseStore store = store(random, size);
+            for (int row = 0; row < size; row += 7) store.delete(row);
+            ExpenseStore.Snapshot rows = store.snapshot();
+            for (SortedRows.Key key : SortedRows.Key.values()) {
+                assertArrayEquals(expected(rows, key), SortedRows.sort(rows, size, key), key + " of " + size);
+            }
+        }
+    }
+
+    @Test
+    void alreadyOrderedRowsStayPut() {
+        ExpenseStore store = new ExpenseStore();
+        for (int row = 0; row < 1000; row++) store.add(DAY + row / 10, "C", 5, "");
+        ExpenseStore.Snapshot rows = store.snapshot();
+        for (SortedRows.Key key : SortedRows.Key.values()) {
+            assertArrayEquals(IntStream.range(0, 1000).toArray(), SortedRows.sort(rows, 1000, key));
+        }
+    }
+
+    @Test
+    void extendMatchesAFullSort() {
+        Random random = new Random(2);
+        ExpenseStore store = store(random, 3000);
+        for (SortedRows.Key key : SortedRows.Key.values()) {
+            int[] sorted = SortedRows.sort(store.snapshot(), store.size(), key);
+            int from = store.size();
+            for (int i = 0; i < 500; i++) addRandomRow(store, random);
+            store.delete(from + 3);
+            ExpenseStore.Snapshot rows = store.snapshot();
+
+            sorted = SortedRows.extend(rows, sorted, from, rows.size(), key);
+            assertArrayEquals(expected(rows, key), sorted, key.toString());
+        }
+    }
+
+    @Test
+    void patchMatchesAFullSortAfterEveryKindOfChange() {
+        Random random = new Random(3);
+        ExpenseStore store = store(random, 4000);
+        for (int row = 0; row < 4000; row += 11) store.delete(row);
+        for (SortedRows.Key key : SortedRows.Key.values()) {
+            ExpenseStore.Snapshot older = store.snapshot();
+            int[] sorted = SortedRows.sort(older, older.size(), key);
+
+            for (int i = 0; i < 200; i++) {
+                int row = random.nextInt(store.size());
+                switch (random.nextInt(4)) {
+                    case 0 -> store.update(row, DAY + random.nextInt(40) - 20,
+                            CATEGORIES[random.nextInt(CATEGORIES.length)], random.nextInt(2001) - 1000, "edited");
+                    case 1 -> store.delete(row);
+                    case 2 -> store.restore(row);
+                    default -> addRandomRow(store, random);
+                }
+            }
+            // A new category shifts the ranks of the ones after it
+            store.add(DAY, "Bananas", 0, "");
+            ExpenseStore.Snapshot rows = store.snapshot();
+
+            sorted = SortedRows.patch(rows, sorted, older.size(), rows.changedSince(older.modifications()), key);
+            assertArrayEquals(expected(rows, key), sorted, key.toString());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package expensetracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+// Deterministic ledgers for the benchmarks: ten years of expenses over a few dozen
+// categories, with descriptions that mostly repeat like real statements do. The same
+// size always produces the same rows, so results are comparable across runs.
+//
+// Files are generated once into java.io.tmpdir and reused; 10M rows is ~400 MB of CSV.
+final class GeneratedLedgers {
+    static final String[] CATEGORIES = {
+            "Food", "Groceries", "Rent", "Electricity", "Water", "Internet", "Mobile", "Fuel",
+            "Taxi", "Metro", "Bus", "Flights", "Hotels", "Movies", "Books", "Music", "Games",
+            "Gym", "Doctor", "Pharmacy", "Insurance", "Clothes", "Shoes", "Gifts", "Charity",
+            "Education", "Stationery", "Furniture", "Appliances", "Repairs", "Pets", "Snacks",
+            "Coffee", "Restaurants", "Subscriptions", "Taxes", "Bank Fees", "Travel", "Salon", "Misc"
+    };
+    private static final String[] WORDS = {
+            "weekly", "monthly", "lunch", "dinner", "order", "refill", "ticket", "bill", "top-up",
+            "payment", "store", "online", "cash", "card", "family", "office", "trip", "renewal"
+    };
+    private static final int FIRST_DAY = Dates.epochDay(2015, 1, 1);
+    private static final int DAYS = Dates.epochDay(2025, 1, 1) - FIRST_DAY;
+
+    private GeneratedLedgers() {
+    }
+
+    // Rows are in date order, the way an appended ledger grows
+    static ExpenseStore store(int rows) {
+        ExpenseStore store = new ExpenseStore(rows);
+        SplittableRandom random = new SplittableRandom(rows);
+        for (int row = 0; row < rows; row++) {
+            store.add(day(row, rows), category(random), amount(random), description(random, row));
+        }
+        return store;
+    }
+
+    static File csv(int rows) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"), "expense-bench-" + rows + ".csv");
+        if (file.isFile()) return file;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        SplittableRandom random = new SplittableRandom(rows);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int row = 0; row < rows; row++) {
+                writer.write(ExpenseStore.toCSV(day(row, rows), category(random), amount(random), description(random, row)));
+                writer.write('\n');
+            }
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Could not create " + file);
+        return file;
+    }
+
+    static File ledger(int rows) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"), "expense-bench-" + rows + BinaryLedger.EXTENSION);
+        if (!file.isFile()) BinaryLedger.write(store(rows), file);
+        return file;
+    }
+
+    private static int day(int row, int rows) {
+        return FIRST_DAY + (int) ((long) row * DAYS / rows);
+    }
+
+    private static String category(SplittableRandom random) {
+        // Skewed so a few categories dominate, as they do in practice
+        int i = random.nextInt(CATEGORIES.length);
+        return CATEGORIES[random.nextBoolean() ? i / 4 : i];
+    }
+
+    private static long amount(SplittableRandom random) {
+        return random.nextInt(10, 500_000);
+    }
+
+    private static String description(SplittableRandom random, int row) {
+        // One in ten descriptions is unique, the rest come from a small vocabulary
+        if (random.nextInt(10) == 0) return "ref " + row;
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+    }
+}
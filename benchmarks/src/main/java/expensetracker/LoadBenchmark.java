@@ -0,0 +1,74 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// The load paths behind AdvancedExpenseTracker.loadExpensesFromFile: a CSV parsed on
+// every core or streamed on one, and the binary ledger, each into a fully indexed store
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LoadBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private File csv;
+    private File ledger;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = GeneratedLedgers.csv(rows);
+        ledger = GeneratedLedgers.ledger(rows);
+    }
+
+    @Benchmark
+    public int loadCsvParallel() throws IOException {
+        ExpenseStore store = new ExpenseStore();
+        ParallelCsvImporter.read(csv, (batch, bytesRead) -> {
+            store.addAll(batch);
+            return true;
+        });
+        return store.size();
+    }
+
+    @Benchmark
+    public int loadCsvSequential() throws IOException {
+        ExpenseStore store = new ExpenseStore();
+        ExpenseCsvReader.read(csv, 10_000, (batch, bytesRead) -> {
+            store.addAll(batch);
+            return true;
+        });
+        return store.size();
+    }
+
+    @Benchmark
+    public int loadLedger() throws IOException {
+        BinaryLedger in = BinaryLedger.open(ledger);
+        ExpenseStore store = new ExpenseStore(in.rowCount());
+        in.readInto(store, 0, in.rowCount());
+        return store.size();
+    }
+
+    // Opening only maps the file; this is the cost before the first row is shown
+    @Benchmark
+    public long openLedger() throws IOException {
+        BinaryLedger in = BinaryLedger.open(ledger);
+        return in.amountMinor(in.rowCount() - 1);
+    }
+}
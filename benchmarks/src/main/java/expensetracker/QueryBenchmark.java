@@ -0,0 +1,97 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Totals, category search and the month, year and date-range filters against a
+// loaded ledger. All of these run on the EDT, so microseconds matter.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class QueryBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private ExpenseStore store;
+    private int foodId;
+    private int monthKey;
+    private int fromDay;
+    private int toDay;
+    private int updatedRow;
+
+    @Setup
+    public void setUp() {
+        store = GeneratedLedgers.store(rows);
+        foodId = store.findCategory("Food");
+        monthKey = Dates.monthKey(Dates.epochDay(2020, 6, 1));
+        fromDay = Dates.epochDay(2020, 3, 15);
+        toDay = Dates.epochDay(2020, 9, 14);
+    }
+
+    @Benchmark
+    public long total() {
+        return store.totalMinor();
+    }
+
+    @Benchmark
+    public long categoryMonthTotal() {
+        return store.aggregates().categoryMonthTotal(foodId, monthKey);
+    }
+
+    // Editing a row and reading the new total, as the table does after an edit
+    @Benchmark
+    public long updateAndTotal() {
+        int row = updatedRow++ % store.size();
+        store.update(row, store.epochDay(row), store.category(row), store.amountMinor(row) + 1, store.description(row));
+        return store.totalMinor();
+    }
+
+    @Benchmark
+    public int searchCategory() {
+        return store.categoryIndex().search("ocer").size();
+    }
+
+    @Benchmark
+    public int searchShortQuery() {
+        return store.categoryIndex().search("o").size();
+    }
+
+    @Benchmark
+    public int filterMonth() {
+        return store.dateIndex().rowsInMonth(monthKey).size();
+    }
+
+    @Benchmark
+    public int filterYear() {
+        return store.dateIndex().rowsInYear(2020).size();
+    }
+
+    @Benchmark
+    public int filterMonthOfAnyYear() {
+        return store.dateIndex().rowsInMonthOfAnyYear(6).size();
+    }
+
+    @Benchmark
+    public int filterDateRange() {
+        return store.dateIndex().rowsBetween(fromDay, toDay, store).size();
+    }
+
+    @Benchmark
+    public int filterCategoryAndYear() {
+        return IntList.intersect(store.categoryIndex().rows(foodId), store.dateIndex().rowsInYear(2020)).size();
+    }
+}
@@ -0,0 +1,81 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// The save paths: one journaled add, which is what the Add button pays, and the full
+// snapshot rewrites that compaction performs in the background
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SaveBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private ExpenseStore store;
+    private File dir;
+    private ExpenseJournal journal;
+    private int nextRow;
+
+    @Setup
+    public void setUp() throws IOException {
+        store = GeneratedLedgers.store(rows);
+        dir = Files.createTempDirectory("expense-save").toFile();
+        journal = new ExpenseJournal(new File(dir, "expenses.csv"));
+        journal.replay(new ExpenseStore());
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+    }
+
+    // Includes the fsync, so this measures the disk as much as the code
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void journalAdd() throws IOException {
+        int row = nextRow++ % rows;
+        journal.recordAdd(row, store.epochDay(row), store.category(row), store.amountMinor(row), store.description(row));
+    }
+
+    @Benchmark
+    public void writeLedger() throws IOException {
+        BinaryLedger.write(store, new File(dir, "expenses" + BinaryLedger.EXTENSION));
+    }
+
+    @Benchmark
+    public void writeCsv() throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(dir, "expenses-full.csv")), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int row = 0; row < store.size(); row++) {
+                writer.write(store.toCSV(row));
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Populating the JTable model through the engine: filtering and swapping in a view,
+// sorting, and rendering the cells of one screen, which is all a JTable asks for
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djava.awt.headless=true"})
+public class TableModelBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private ExpenseEngine engine;
+    private ExpenseTableModel advanced;
+    private ExpenseTableModel enhanced;
+    private ExpenseTableModel byAmount;
+    private int firstVisible;
+
+    @Setup
+    public void setUp() throws IOException {
+        engine = new ExpenseEngine();
+        engine.addAll(GeneratedLedgers.store(rows));
+        advanced = new ExpenseTableModel(engine, ExpenseTableModel.Column.DATE, ExpenseTableModel.Column.CATEGORY,
+                ExpenseTableModel.Column.AMOUNT, ExpenseTableModel.Column.DESCRIPTION);
+        enhanced = new ExpenseTableModel(engine, ExpenseTableModel.Column.DAY_MONTH_YEAR, ExpenseTableModel.Column.CATEGORY,
+                ExpenseTableModel.Column.AMOUNT, ExpenseTableModel.Column.DESCRIPTION);
+        byAmount = new ExpenseTableModel(engine, ExpenseTableModel.Column.DATE, ExpenseTableModel.Column.CATEGORY,
+                ExpenseTableModel.Column.AMOUNT, ExpenseTableModel.Column.DESCRIPTION);
+        byAmount.sortBy(2);
+    }
+
+    @Benchmark
+    public int showAll() {
+        advanced.showAll();
+        return advanced.getRowCount();
+    }
+
+    @Benchmark
+    public int showMonth() {
+        ExpenseFilter june = new ExpenseFilter().year(2020).month(6);
+        advanced.showOnly(engine.filter(june), june::matches);
+        return advanced.getRowCount();
+    }
+
+    // A month's rows sorted on their own; the whole ledger's order is kept by the engine
+    @Benchmark
+    public int showMonthSortedByAmount() {
+        ExpenseFilter june = new ExpenseFilter().year(2020).month(6);
+        byAmount.showOnly(engine.filter(june), june::matches);
+        return byAmount.getRowCount();
+    }
+
+    // Sorting the whole ledger from scratch, as the first click on a header does
+    @Benchmark
+    public int sortAllByAmount() {
+        ExpenseStore.Snapshot rows = engine.snapshot();
+        return SortedRows.sort(rows, rows.size(), SortedRows.Key.AMOUNT).length;
+    }
+
+    // One screen of cells at a different scroll position each time
+    @Benchmark
+    public void renderScreen(Blackhole blackhole) {
+        renderScreen(advanced, blackhole);
+    }
+
+    @Benchmark
+    public void renderScreenDayMonthYear(Blackhole blackhole) {
+        renderScreen(enhanced, blackhole);
+    }
+
+    @Benchmark
+    public void renderScreenSortedByAmount(Blackhole blackhole) {
+        byAmount.showAll();
+        renderScreen(byAmount, blackhole);
+    }
+
+    private void renderScreen(ExpenseTableModel model, Blackhole blackhole) {
+        int count = model.getRowCount();
+        firstVisible = (firstVisible + 7919) % Math.max(1, count - VISIBLE_ROWS);
+        int last = Math.min(count, firstVisible + VISIBLE_ROWS);
+        for (int row = firstVisible; row < last; row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                blackhole.consume(model.getValueAt(row, column));
+            }
+        }
+    }
+}